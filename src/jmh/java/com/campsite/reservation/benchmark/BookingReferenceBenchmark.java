@@ -0,0 +1,54 @@
+package com.campsite.reservation.benchmark;
+
+import com.campsite.reservation.reference.BookingReferenceGenerator;
+import com.campsite.reservation.reference.SnowflakeBookingReferenceGenerator;
+import com.campsite.reservation.reference.UuidBookingReferenceGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of generating a booking reference when every request thread books at the same time
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class BookingReferenceBenchmark {
+
+    public enum GENERATOR {
+        UUID,
+        SNOWFLAKE,
+    }
+
+    @Param({"UUID", "SNOWFLAKE"})
+    private GENERATOR generator;
+
+    private BookingReferenceGenerator bookingReferenceGenerator;
+
+    @Setup
+    public void setUp() {
+        bookingReferenceGenerator = generator == GENERATOR.UUID
+                ? new UuidBookingReferenceGenerator()
+                : new SnowflakeBookingReferenceGenerator(0);
+    }
+
+    @Benchmark
+    public String next() {
+        return bookingReferenceGenerator.next();
+    }
+}
@@ -0,0 +1,117 @@
+package com.campsite.reservation.benchmark;
+
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservedStay;
+import com.campsite.reservation.repository.CampsiteRepository;
+import com.campsite.reservation.repository.ReservationRepository;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static com.campsite.reservation.model.Reservation.STATUS.ACTIVE;
+
+/**
+ * Reservation data sets and repository fixtures shared by the benchmarks
+ */
+public final class ReservationFixtures {
+
+    /**
+     * Last bookable departure, a stay of 3 nights starting 30 days from now
+     */
+    public static final int BOOKABLE_DAYS = 33;
+
+    private ReservationFixtures() {
+    }
+
+    /**
+     * Generates non overlapping reservations of 1 to 3 nights over the bookable window of the default campsite
+     * @param densityPercent the approximate percentage of nights booked
+     * @param seed the seed of the generator so that runs are reproducible
+     * @return the reservations ordered by arrival date
+     */
+    public static List<Reservation> reservations(int densityPercent, long seed) {
+        Random random = new Random(seed);
+        LocalDate today = LocalDate.now();
+        Campsite campsite = defaultCampsite();
+        List<Reservation> reservations = new ArrayList<>();
+        int day = 1;
+        while (day < BOOKABLE_DAYS) {
+            int nights = 1 + random.nextInt(3);
+            if (random.nextInt(100) < densityPercent && day + nights <= BOOKABLE_DAYS) {
+                Reservation reservation = new Reservation();
+                reservation.setReservationId(UUID.randomUUID().toString());
+                reservation.setCampsite(campsite);
+                reservation.setArrivalDate(today.plusDays(day));
+                reservation.setDepartureDate(today.plusDays(day + nights));
+                reservation.setReservationStatus(ACTIVE);
+                reservations.add(reservation);
+                day += nights;
+            } else {
+                day++;
+            }
+        }
+        return reservations;
+    }
+
+    public static Campsite defaultCampsite() {
+        Campsite campsite = new Campsite();
+        campsite.setId(1L);
+        campsite.setCode(Campsite.DEFAULT_CODE);
+        campsite.setName("Default campsite");
+        return campsite;
+    }
+
+    /**
+     * A {@link CampsiteRepository} holding the provided campsites, only finding all of them is supported
+     */
+    public static CampsiteRepository inMemoryCampsiteRepository(List<Campsite> campsites) {
+        return (CampsiteRepository) Proxy.newProxyInstance(CampsiteRepository.class.getClassLoader(),
+                new Class<?>[]{CampsiteRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findAll":
+                            return campsites;
+                        case "toString":
+                            return "InMemoryCampsiteRepository";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * A {@link ReservationRepository} answering the availability queries from memory, other methods are unsupported
+     */
+    public static ReservationRepository inMemoryRepository(List<Reservation> reservations) {
+        return (ReservationRepository) Proxy.newProxyInstance(ReservationRepository.class.getClassLoader(),
+                new Class<?>[]{ReservationRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "retrieveStaysForDates":
+                            String campsite = (String) args[0];
+                            LocalDate start = (LocalDate) args[1];
+                            LocalDate end = (LocalDate) args[2];
+                            return reservations.stream()
+                                    .filter(res -> res.getCampsite().getCode().equals(campsite))
+                                    .filter(res -> res.getArrivalDate().isBefore(end) && res.getDepartureDate().isAfter(start))
+                                    .sorted(Comparator.comparing(Reservation::getArrivalDate))
+                                    .map(res -> new ReservedStay(res.getArrivalDate(), res.getDepartureDate()))
+                                    .collect(Collectors.toList());
+                        case "retrieveReservationsDepartingAfter":
+                            LocalDate date = (LocalDate) args[0];
+                            return reservations.stream()
+                                    .filter(res -> res.getDepartureDate().isAfter(date))
+                                    .collect(Collectors.toList());
+                        case "toString":
+                            return "InMemoryReservationRepository";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,121 @@
+package com.campsite.reservation.benchmark;
+
+import com.campsite.reservation.ReservationApplication;
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.repository.CampsiteRepository;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.hazelcast.core.HazelcastInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a second level cache hit, a reservation found by id in a new entity manager.
+ * <ul>
+ *     <li>MEMBER: the application is an embedded member of a cluster of its own</li>
+ *     <li>CLIENT: the application is a client of a separate member, every hit is a round trip</li>
+ *     <li>CLIENT_NEAR_CACHE: as CLIENT with the near cache of the regions enabled</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecondLevelCacheBenchmark {
+
+    public enum CLUSTER {
+        MEMBER,
+        CLIENT,
+        CLIENT_NEAR_CACHE,
+    }
+
+    @Param({"MEMBER", "CLIENT", "CLIENT_NEAR_CACHE"})
+    private CLUSTER cluster;
+
+    private HazelcastInstance hazelcastInstance;
+
+    private ConfigurableApplicationContext context;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long[] ids;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        //arguments rather than default properties, which the profile would override
+        List<String> args = new ArrayList<>(List.of("--spring.main.web-application-type=none",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+                "--logging.level.root=warn",
+                "--campsite.hazelcast.enabled=true"));
+        if (cluster == CLUSTER.MEMBER) {
+            args.addAll(List.of("--campsite.hazelcast.mode=member",
+                    "--campsite.hazelcast.cluster-name=benchmark",
+                    "--campsite.hazelcast.addresses="));
+        } else {
+            hazelcastInstance = TestUtils.startHazelCastEmbedded();
+            args.addAll(List.of("--campsite.hazelcast.mode=client",
+                    "--campsite.hazelcast.near-cache.enabled=" + (cluster == CLUSTER.CLIENT_NEAR_CACHE)));
+        }
+        context = new SpringApplicationBuilder(ReservationApplication.class)
+                .profiles("test")
+                .run(args.toArray(String[]::new));
+
+        List<Reservation> reservations = ReservationFixtures.reservations(90, 42);
+        Campsite campsite = context.getBean(CampsiteRepository.class).findCampsiteByCode(Campsite.DEFAULT_CODE).get();
+        reservations.forEach(reservation -> reservation.setCampsite(campsite));
+        ids = context.getBean(ReservationRepository.class).saveAll(reservations).stream()
+                .map(Reservation::getId)
+                .toArray(Long[]::new);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        for (Long id : ids) {
+            find(id);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        if (hazelcastInstance != null) {
+            hazelcastInstance.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Reservation findCachedReservation() {
+        next = (next + 1) % ids.length;
+        return find(ids[next]);
+    }
+
+    private Reservation find(Long id) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.find(Reservation.class, id);
+        } finally {
+            entityManager.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.campsite.reservation.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from launching the JVM to the first availability response and to the readiness probe reporting UP, with and
+ * without the class data sharing archive of the appcds profile. Not a JMH benchmark: every run needs a new JVM
+ * started with its own options.
+ * <p>
+ * Build the jar and the archive with {@code mvn -Pbenchmark,appcds -DskipTests package}, then run
+ * {@code java -cp target/test-classes com.campsite.reservation.benchmark.StartupBenchmark} from the project directory
+ * (-Dstartup.runs to change the number of runs per variant). The application runs with the cds profile, against an
+ * in-memory database and warming up before it is ready.
+ */
+public final class StartupBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    private static final HttpClient HTTP = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(100)).build();
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = Integer.getInteger("startup.runs", 5);
+        File directory = new File("target/cds");
+        File[] jars = directory.listFiles((dir, name) -> name.endsWith("-cds.jar"));
+        File archive = new File(directory, "reservation.jsa");
+        if (jars == null || jars.length != 1 || !archive.isFile()) {
+            throw new IllegalStateException("No jar and archive in " + directory.getAbsolutePath() + ", build them with -Pappcds");
+        }
+        report("default", runs, jars[0], List.of());
+        report("appcds", runs, jars[0], List.of("-XX:SharedArchiveFile=" + archive.getPath()));
+    }
+
+    private static void report(String variant, int runs, File jar, List<String> jvmOptions) throws Exception {
+        List<Long> firstResponses = new ArrayList<>();
+        List<Long> readiness = new ArrayList<>();
+        for (int run = 0; run < runs; run++) {
+            long[] times = launch(jar, jvmOptions);
+            firstResponses.add(times[0]);
+            readiness.add(times[1]);
+        }
+        System.out.printf("%-8s first response %s, ready %s%n", variant, summary(firstResponses), summary(readiness));
+    }
+
+    /**
+     * @return the milliseconds to the first availability response and to the readiness probe reporting UP
+     */
+    private static long[] launch(File jar, List<String> jvmOptions) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(jvmOptions);
+        command.addAll(Arrays.asList("-jar", jar.getPath(), "--spring.profiles.active=cds", "--server.port=" + port,
+                "--logging.level.root=warn"));
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            String base = "http://localhost:" + port + "/reservation";
+            long firstResponse = await(process, start, base + "/availability");
+            long ready = await(process, start, base + "/actuator/health/readiness");
+            return new long[]{firstResponse, ready};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Polls the url until it answers 200
+     * @return the milliseconds since start
+     */
+    private static long await(Process process, long start, String url) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(TIMEOUT).build();
+        while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The application stopped with " + process.exitValue());
+            }
+            try {
+                if (HTTP.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+            } catch (ConnectException e) {
+                //not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("No response from " + url + " within " + TIMEOUT);
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String summary(List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        return String.format("median %d ms (min %d, max %d)", sorted.get(sorted.size() / 2), sorted.get(0),
+                sorted.get(sorted.size() - 1));
+    }
+}
@@ -0,0 +1,147 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.ReservationApplication;
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.benchmark.ReservationFixtures;
+import com.campsite.reservation.lock.LocalBookingLockManager;
+import com.campsite.reservation.model.AvailableDate;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.repository.CampsiteRepository;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.hazelcast.core.HazelcastInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of {@link ReservationServiceImpl} over calendars of varying density.
+ * <ul>
+ *     <li>IN_MEMORY: the service wired by hand to a repository answering from a list</li>
+ *     <li>H2: the application context of the test profile with the reservations stored in H2</li>
+ * </ul>
+ * With indexed=false the {@link OccupancyIndex} is left unloaded so every query goes to the repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReservationServiceBenchmark {
+
+    public enum FIXTURE {
+        IN_MEMORY,
+        H2,
+    }
+
+    @Param({"IN_MEMORY", "H2"})
+    private FIXTURE fixture;
+
+    /**
+     * Approximate percentage of booked nights in the next month
+     */
+    @Param({"0", "30", "60", "90"})
+    private int density;
+
+    @Param({"true", "false"})
+    private boolean indexed;
+
+    private HazelcastInstance hazelcastInstance;
+
+    private ConfigurableApplicationContext context;
+
+    private ReservationServiceImpl reservationService;
+
+    private LocalDate[] stayStarts;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Reservation> reservations = ReservationFixtures.reservations(density, 42);
+        OccupancyIndex occupancyIndex;
+        if (fixture == FIXTURE.H2) {
+            // as in the tests, the Hibernate cache region factory expects a Hazelcast member
+            hazelcastInstance = TestUtils.startHazelCastEmbedded();
+            context = new SpringApplicationBuilder(ReservationApplication.class)
+                    .profiles("test")
+                    .properties("spring.main.web-application-type=none",
+                            "spring.jpa.show-sql=false",
+                            "logging.level.root=warn")
+                    .run();
+            Campsite campsite = context.getBean(CampsiteRepository.class).findCampsiteByCode(Campsite.DEFAULT_CODE).get();
+            reservations.forEach(reservation -> reservation.setCampsite(campsite));
+            context.getBean(ReservationRepository.class).saveAll(reservations);
+            reservationService = AopTestUtils.getUltimateTargetObject(context.getBean(ReservationService.class));
+            occupancyIndex = context.getBean(OccupancyIndex.class);
+            occupancyIndex.loadFromRepository();
+        } else {
+            ReservationRepository repository = ReservationFixtures.inMemoryRepository(reservations);
+            reservationService = new ReservationServiceImpl();
+            ReflectionTestUtils.setField(reservationService, "reservationRepository", repository);
+            ReflectionTestUtils.setField(reservationService, "bookingLockManager", new LocalBookingLockManager());
+            ReflectionTestUtils.setField(reservationService, "availabilityCache", new AvailabilityCache());
+            CampsiteRegistry campsiteRegistry = new CampsiteRegistry(
+                    ReservationFixtures.inMemoryCampsiteRepository(List.of(ReservationFixtures.defaultCampsite())), repository, null);
+            campsiteRegistry.refresh();
+            ReflectionTestUtils.setField(reservationService, "campsiteRegistry", campsiteRegistry);
+            occupancyIndex = new OccupancyIndex();
+            occupancyIndex.load(LocalDate.now(), reservations);
+        }
+        ReflectionTestUtils.setField(reservationService, "occupancyIndex", indexed ? occupancyIndex : new OccupancyIndex());
+
+        stayStarts = new LocalDate[30];
+        for (int i = 0; i < stayStarts.length; i++) {
+            stayStarts[i] = LocalDate.now().plusDays(i + 1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+            hazelcastInstance.shutdown();
+        }
+    }
+
+    @Benchmark
+    public List<AvailableDate> retrieveDefaultAvailableDates() {
+        return reservationService.retrieveAvailableDates(null, null);
+    }
+
+    @Benchmark
+    public boolean isAvailableSpot() {
+        LocalDate start = nextStayStart();
+        return reservationService.isAvailableSpot(Campsite.DEFAULT_CODE, start, start.plusDays(2));
+    }
+
+    @Benchmark
+    public LocalDate validateDateRange() {
+        LocalDate start = nextStayStart();
+        reservationService.validateDateRange(start, start.plusDays(2));
+        return start;
+    }
+
+    private LocalDate nextStayStart() {
+        next = (next + 1) % stayStarts.length;
+        return stayStarts[next];
+    }
+}
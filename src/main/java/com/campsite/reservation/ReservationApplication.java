@@ -1,23 +1,28 @@
 package com.campsite.reservation;
 
+import com.campsite.reservation.config.CampsiteProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.data.rest.RepositoryRestMvcAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.auditing.DateTimeProvider;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.data.repository.config.BootstrapMode;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.time.OffsetDateTime;
 import java.util.Optional;
 
 @SpringBootApplication(exclude = RepositoryRestMvcAutoConfiguration.class)
+@EnableConfigurationProperties(CampsiteProperties.class)
 @EnableJpaAuditing(dateTimeProviderRef = "auditingDateTimeProvider")
 @ComponentScan(basePackages={"com.campsite"})
 @EnableJpaRepositories(bootstrapMode = BootstrapMode.DEFERRED,
         basePackages={"com.campsite.reservation.repository"})
+@EnableScheduling
 public class ReservationApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,407 @@
+package com.campsite.reservation.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Application specific settings bound from the campsite.* namespace
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "campsite")
+public class CampsiteProperties {
+
+    private final Hazelcast hazelcast = new Hazelcast();
+
+    private final Lock lock = new Lock();
+
+    private final Booking booking = new Booking();
+
+    private final AvailabilityCache availabilityCache = new AvailabilityCache();
+
+    private final AvailabilityStream availabilityStream = new AvailabilityStream();
+
+    private final Reference reference = new Reference();
+
+    private final Admission admission = new Admission();
+
+    private final Replica replica = new Replica();
+
+    private final Journal journal = new Journal();
+
+    private final WarmUp warmUp = new WarmUp();
+
+    /**
+     * Connection to the Hazelcast cluster used for cluster wide coordination
+     */
+    @Getter
+    @Setter
+    public static class Hazelcast {
+
+        public enum MODE {
+            /**
+             * The application connects to a separate cluster
+             */
+            CLIENT,
+            /**
+             * The application is a member of the cluster, it holds a share of the data and runs the map stores
+             */
+            MEMBER,
+        }
+
+        /**
+         * Whether the application should connect to the Hazelcast cluster
+         */
+        private boolean enabled;
+
+        private MODE mode = MODE.CLIENT;
+
+        private String clusterName = "dev";
+
+        /**
+         * Name of the instance, the Hibernate second level cache looks it up by this name
+         */
+        private String instanceName = "campsite";
+
+        /**
+         * Members to connect to as a client, or to join as a member. A member without addresses forms a cluster
+         * of its own, e.g. to run offline
+         */
+        private List<String> addresses = new ArrayList<>(List.of("127.0.0.1:5701"));
+
+        private final NearCache nearCache = new NearCache();
+    }
+
+    /**
+     * Copies of the second level cache entries kept by each node, invalidated when an entry changes on the cluster
+     */
+    @Getter
+    @Setter
+    public static class NearCache {
+
+        private boolean enabled;
+
+        /**
+         * Second level cache regions with a near cache
+         */
+        private List<String> regions = new ArrayList<>(List.of("reservation", "user_info", "camp_site"));
+
+        /**
+         * Entries kept per region, the least recently used are evicted beyond
+         */
+        private int maxSize = 10_000;
+
+        /**
+         * Upper bound on how long an entry is served, in case an invalidation is missed
+         */
+        private Duration timeToLive = Duration.ofMinutes(10);
+    }
+
+    /**
+     * Locking used to serialize bookings
+     */
+    @Getter
+    @Setter
+    public static class Lock {
+
+        public enum MODE {
+            /**
+             * A single fair lock inside the JVM, only safe with one application instance
+             */
+            LOCAL,
+            /**
+             * Hazelcast CP {@link com.hazelcast.cp.lock.FencedLock}s striped per campsite and week
+             */
+            HAZELCAST,
+        }
+
+        private MODE mode = MODE.LOCAL;
+
+        /**
+         * Prefix of the name of the per week Hazelcast locks
+         */
+        private String namePrefix = "campsite-booking-";
+    }
+
+    /**
+     * How conflicting bookings are prevented
+     */
+    @Getter
+    @Setter
+    public static class Booking {
+
+        public enum MODE {
+            /**
+             * Bookings are serialized by the {@link Lock} and re-checked against the database
+             */
+            LOCKING,
+            /**
+             * Bookings are written straight away, overlaps are rejected by a PostgreSQL exclusion constraint
+             */
+            EXCLUSION_CONSTRAINT,
+            /**
+             * Bookings, modifications and cancellations are applied one after the other by a single writer thread
+             * and committed in groups, only safe with one application instance
+             */
+            SEQUENCED,
+            /**
+             * Bookings claim one versioned inventory row per night and are retried when another booking
+             * claimed one of the nights first, no lock is taken
+             */
+            INVENTORY,
+            /**
+             * Nights are claimed atomically in a Hazelcast map partitioned by campsite and week, then the booking is
+             * written to the database, requires {@link Hazelcast#enabled}
+             */
+            CALENDAR,
+            /**
+             * Bookings are checked and stored in a Hazelcast map under the booking lock and written to the database
+             * in batches afterwards, requires {@link Hazelcast.MODE#MEMBER}
+             */
+            WRITE_BEHIND,
+        }
+
+        private MODE mode = MODE.LOCKING;
+
+        private final Sequencer sequencer = new Sequencer();
+
+        private final Inventory inventory = new Inventory();
+
+        private final WriteBehind writeBehind = new WriteBehind();
+    }
+
+    /**
+     * Writes of the reservations stored in {@link Booking.MODE#WRITE_BEHIND}
+     */
+    @Getter
+    @Setter
+    public static class WriteBehind {
+
+        /**
+         * How long a change waits before being written, changes of the same reservation within the delay are
+         * written once. Rounded to seconds
+         */
+        private Duration writeDelay = Duration.ofSeconds(1);
+
+        /**
+         * Maximum number of reservations written in one transaction
+         */
+        private int writeBatchSize = 100;
+    }
+
+    /**
+     * Retries of the bookings made in {@link Booking.MODE#INVENTORY}
+     */
+    @Getter
+    @Setter
+    public static class Inventory {
+
+        /**
+         * Attempts of a booking, beyond which it is rejected with a 503
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * Pause before the first retry, doubled on every retry and randomized so that contenders spread out
+         */
+        private Duration initialBackoff = Duration.ofMillis(5);
+
+        private Duration maxBackoff = Duration.ofMillis(100);
+    }
+
+    /**
+     * Settings of the single writer used by {@link Booking.MODE#SEQUENCED}
+     */
+    @Getter
+    @Setter
+    public static class Sequencer {
+
+        /**
+         * Requests waiting for the writer, beyond which new requests are rejected
+         */
+        private int queueCapacity = 1024;
+
+        /**
+         * Maximum number of requests committed in one transaction
+         */
+        private int maxGroupSize = 32;
+
+        /**
+         * How long a request waits for room in the queue before being rejected
+         */
+        private Duration submitTimeout = Duration.ofSeconds(1);
+
+        /**
+         * How long a queued request waits to be applied, beyond which it is answered with a 503
+         */
+        private Duration resultTimeout = Duration.ofSeconds(10);
+    }
+
+    /**
+     * Cluster wide cache of availability windows, requires {@link Hazelcast#enabled}
+     */
+    @Getter
+    @Setter
+    public static class AvailabilityCache {
+
+        private boolean enabled;
+
+        /**
+         * Upper bound on how long a cached window may be served
+         */
+        private Duration timeToLive = Duration.ofMinutes(5);
+    }
+
+    /**
+     * Server-sent events of availability changes
+     */
+    @Getter
+    @Setter
+    public static class AvailabilityStream {
+
+        /**
+         * How long a subscription stays open, clients reconnect afterwards
+         */
+        private Duration timeout = Duration.ofMinutes(30);
+    }
+
+    /**
+     * Generation of booking references
+     */
+    @Getter
+    @Setter
+    public static class Reference {
+
+        public enum MODE {
+            /**
+             * Time ordered 13 characters references made of a timestamp, a node id and a sequence
+             */
+            SNOWFLAKE,
+            /**
+             * Random UUIDs
+             */
+            UUID,
+        }
+
+        private MODE mode = MODE.SNOWFLAKE;
+
+        /**
+         * Id of this instance between 0 and 1023, distinct on every instance (application.yaml sets 0 for a single
+         * instance). Drawn from Hazelcast if not set, required without Hazelcast
+         */
+        private Integer nodeId;
+    }
+
+    /**
+     * Admission control of the booking and modification requests
+     */
+    @Getter
+    @Setter
+    public static class Admission {
+
+        private boolean enabled = true;
+
+        /**
+         * Requests processed at the same time, should stay below the connection pool size
+         */
+        private int maxConcurrent = 32;
+
+        /**
+         * Requests waiting for their turn, beyond which new requests are rejected straight away
+         */
+        private int queueDepth = 64;
+
+        /**
+         * How long a request waits for its turn before being rejected
+         */
+        private Duration queueTimeout = Duration.ofSeconds(1);
+
+        /**
+         * Sent in the Retry-After header of the rejected requests
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    /**
+     * Read replicas serving the read-only transactions, see {@link ReplicaRoutingDataSource}
+     */
+    @Getter
+    @Setter
+    public static class Replica {
+
+        private boolean enabled;
+
+        /**
+         * JDBC urls of the replicas, used in turn
+         */
+        private List<String> urls = new ArrayList<>();
+
+        /**
+         * Credentials of the replicas, those of spring.datasource if not set
+         */
+        private String username;
+
+        private String password;
+
+        /**
+         * Size of the pool of each replica
+         */
+        private int maximumPoolSize = 20;
+    }
+
+    /**
+     * Journal of the reservation changes and snapshots of the booked nights, see
+     * {@link com.campsite.reservation.service.ReservationJournal}
+     */
+    @Getter
+    @Setter
+    public static class Journal {
+
+        private boolean enabled;
+
+        /**
+         * Pause between two snapshots
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(5);
+
+        /**
+         * Age from which an entry is folded into a snapshot, longer than any transaction writing to the journal
+         * and than the clock difference between the nodes
+         */
+        private Duration settleTime = Duration.ofMinutes(1);
+
+        /**
+         * Whether this instance takes snapshots. With Hazelcast the instances take turns under a cluster lock,
+         * without it leave it on a single instance
+         */
+        private boolean takeSnapshots = true;
+    }
+
+    /**
+     * Availability queries run before the application reports ready, see
+     * {@link com.campsite.reservation.web.StartupWarmUp}
+     */
+    @Getter
+    @Setter
+    public static class WarmUp {
+
+        private boolean enabled;
+
+        private int iterations = 200;
+
+        /**
+         * Upper bound on the time spent warming up, the application reports ready afterwards regardless
+         */
+        private Duration maxDuration = Duration.ofSeconds(10);
+
+        /**
+         * Stops the application once warmed up, for the class data sharing training run
+         */
+        private boolean exitWhenDone;
+    }
+}
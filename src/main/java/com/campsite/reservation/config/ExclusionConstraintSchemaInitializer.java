@@ -0,0 +1,40 @@
+package com.campsite.reservation.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+/**
+ * Adds the stay daterange column and its exclusion constraint to camp_reservation once Hibernate
+ * has created or updated the table. The script is idempotent and only supports PostgreSQL.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "campsite.booking", name = "mode", havingValue = "exclusion-constraint")
+public class ExclusionConstraintSchemaInitializer {
+
+    private final DataSource dataSource;
+
+    /**
+     * @param entityManagerFactory only injected so that the schema exists before the script runs
+     */
+    public ExclusionConstraintSchemaInitializer(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.dataSource = dataSource;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("db/exclusion-constraint.sql"));
+        // the DO block contains semicolons, send the script as a single statement
+        populator.setSeparator(ScriptUtils.EOF_STATEMENT_SEPARATOR);
+        populator.execute(dataSource);
+        log.info("Exclusion constraint on camp_reservation stays is in place");
+    }
+}
@@ -0,0 +1,134 @@
+package com.campsite.reservation.config;
+
+import com.campsite.reservation.model.ReservationRecord;
+import com.campsite.reservation.service.OccupancyIndex;
+import com.campsite.reservation.service.ReservationMapStore;
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.EvictionConfig;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.IndexConfig;
+import com.hazelcast.config.IndexType;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MapStoreConfig;
+import com.hazelcast.config.MaxSizePolicy;
+import com.hazelcast.config.NearCacheConfig;
+import com.hazelcast.config.TopicConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.MapStoreFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Connects the application to the Hazelcast cluster when campsite.hazelcast.enabled is set, as a client or as a
+ * member depending on campsite.hazelcast.mode.
+ * This instance is used for coordination between application nodes and holds the Hibernate second level cache,
+ * the regions listed in campsite.hazelcast.near-cache get a near cache on each node.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "campsite.hazelcast", name = "enabled", havingValue = "true")
+public class HazelcastConfiguration {
+
+    /**
+     * A member is shut down by the context rather than by its own shutdown hook, it writes the pending changes of
+     * its map stores while the repositories are still available. Map stores are resolved when their map is first
+     * used, the entity manager factory depends on this bean
+     */
+    @Bean(destroyMethod = "shutdown")
+    public HazelcastInstance hazelcastInstance(CampsiteProperties properties, ObjectProvider<ReservationMapStore> reservationMapStore) {
+        CampsiteProperties.Hazelcast hazelcast = properties.getHazelcast();
+        CampsiteProperties.NearCache nearCache = hazelcast.getNearCache();
+        if (hazelcast.getMode() == CampsiteProperties.Hazelcast.MODE.MEMBER) {
+            Config config = new Config();
+            config.setClusterName(hazelcast.getClusterName());
+            config.setInstanceName(hazelcast.getInstanceName());
+            config.setProperty("hazelcast.shutdownhook.enabled", "false");
+            JoinConfig join = config.getNetworkConfig().getJoin();
+            join.getMulticastConfig().setEnabled(false);
+            //without addresses the member does not look for others, it starts offline
+            join.getTcpIpConfig().setEnabled(!hazelcast.getAddresses().isEmpty()).setMembers(hazelcast.getAddresses());
+            //every member receives the changes of the occupancy indexes in the same order
+            config.addTopicConfig(new TopicConfig(OccupancyIndex.TOPIC_NAME).setGlobalOrderingEnabled(true));
+            if (properties.getBooking().getMode() == CampsiteProperties.Booking.MODE.WRITE_BEHIND) {
+                config.addMapConfig(reservationMapConfig(reservationMapStore, properties.getBooking().getWriteBehind()));
+            }
+            if (nearCache.isEnabled()) {
+                nearCache.getRegions().forEach(region -> config.addMapConfig(new MapConfig(region)
+                        .setNearCacheConfig(nearCacheConfig(region, nearCache))));
+            }
+            return Hazelcast.newHazelcastInstance(config);
+        }
+        if (properties.getBooking().getMode() == CampsiteProperties.Booking.MODE.WRITE_BEHIND) {
+            //the map store runs on the members, a separate cluster cannot write to this database
+            throw new IllegalStateException("campsite.booking.mode=write-behind requires campsite.hazelcast.mode=member");
+        }
+        ClientConfig config = new ClientConfig();
+        config.setClusterName(hazelcast.getClusterName());
+        config.setInstanceName(hazelcast.getInstanceName());
+        config.getNetworkConfig().setAddresses(hazelcast.getAddresses());
+        if (nearCache.isEnabled()) {
+            nearCache.getRegions().forEach(region -> config.addNearCacheConfig(nearCacheConfig(region, nearCache)));
+        }
+        return HazelcastClient.newHazelcastClient(config);
+    }
+
+    /**
+     * Points the second level cache at the instance above instead of a client of its own. The instance outlives the
+     * session factory, it is shut down with the context
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hazelcastCacheCustomizer(CampsiteProperties properties) {
+        CampsiteProperties.Hazelcast hazelcast = properties.getHazelcast();
+        return hibernateProperties -> {
+            if (hazelcast.getMode() == CampsiteProperties.Hazelcast.MODE.MEMBER) {
+                hibernateProperties.put("hibernate.cache.hazelcast.use_native_client", "false");
+                hibernateProperties.put("hibernate.cache.hazelcast.instance_name", hazelcast.getInstanceName());
+            } else {
+                hibernateProperties.put("hibernate.cache.hazelcast.use_native_client", "true");
+                hibernateProperties.put("hibernate.cache.hazelcast.native_client_instance_name", hazelcast.getInstanceName());
+            }
+            hibernateProperties.put("hibernate.cache.hazelcast.shutdown_on_session_factory_close", "false");
+        };
+    }
+
+    /**
+     * Entries are kept deserialized, a hit is then a lookup in a local map. Hibernate copies cached entries into
+     * new entities, they are never modified in place
+     */
+    private static NearCacheConfig nearCacheConfig(String region, CampsiteProperties.NearCache nearCache) {
+        return new NearCacheConfig(region)
+                .setInMemoryFormat(InMemoryFormat.OBJECT)
+                .setInvalidateOnChange(true)
+                .setTimeToLiveSeconds((int) nearCache.getTimeToLive().toSeconds())
+                .setEvictionConfig(new EvictionConfig()
+                        .setEvictionPolicy(EvictionPolicy.LRU)
+                        .setMaxSizePolicy(MaxSizePolicy.ENTRY_COUNT)
+                        .setSize(nearCache.getMaxSize()));
+    }
+
+    /**
+     * Reservations are queried by campsite and dates on every booking, they are kept deserialized and indexed
+     */
+    private static MapConfig reservationMapConfig(ObjectProvider<ReservationMapStore> store, CampsiteProperties.WriteBehind writeBehind) {
+        MapStoreConfig mapStoreConfig = new MapStoreConfig()
+                .setEnabled(true)
+                .setFactoryImplementation((MapStoreFactory<String, ReservationRecord>) (mapName, mapProperties) -> store.getObject())
+                .setInitialLoadMode(MapStoreConfig.InitialLoadMode.LAZY)
+                //a delay of 0 would write through
+                .setWriteDelaySeconds((int) Math.max(1, writeBehind.getWriteDelay().toSeconds()))
+                .setWriteBatchSize(writeBehind.getWriteBatchSize())
+                .setWriteCoalescing(true);
+        return new MapConfig(ReservationMapStore.MAP_NAME)
+                .setInMemoryFormat(InMemoryFormat.OBJECT)
+                .setMapStoreConfig(mapStoreConfig)
+                .addIndexConfig(new IndexConfig(IndexType.HASH, "campsite"))
+                .addIndexConfig(new IndexConfig(IndexType.SORTED, "arrivalDate"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.campsite.reservation.config;
+
+import com.campsite.reservation.lock.BookingLockManager;
+import com.campsite.reservation.lock.BookingLockStatistics;
+import com.campsite.reservation.service.AvailabilityCache;
+import com.campsite.reservation.web.BookingAdmissionInterceptor;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application metrics published through Micrometer (scraped by Prometheus on /actuator/prometheus).
+ * The Hikari pool metrics are bound by Spring Boot, as are the Hibernate statistics (hibernate.* meters, with the
+ * second level cache requests per region and the query cache requests) since hibernate-micrometer is on the classpath.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * Enables {@link io.micrometer.core.annotation.Timed} on the {@link com.campsite.reservation.service.ReservationService} methods
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public MeterBinder bookingLockMetrics(BookingLockManager bookingLockManager) {
+        BookingLockStatistics statistics = bookingLockManager.getStatistics();
+        return registry -> {
+            Gauge.builder("campsite.booking.lock.waiting", statistics, BookingLockStatistics::getWaitingCount)
+                    .description("Threads waiting for a booking lock")
+                    .register(registry);
+            FunctionCounter.builder("campsite.booking.lock.timeouts", statistics, BookingLockStatistics::getTimeoutCount)
+                    .description("Booking lock acquisitions that timed out")
+                    .register(registry);
+            FunctionTimer.builder("campsite.booking.lock.wait", statistics,
+                    stats -> stats.getAcquiredCount() + stats.getTimeoutCount(),
+                    stats -> stats.getTotalWaitTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                    .description("Time spent waiting for a booking lock")
+                    .register(registry);
+            FunctionTimer.builder("campsite.booking.lock.hold", statistics,
+                    BookingLockStatistics::getReleasedCount,
+                    stats -> stats.getTotalHoldTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                    .description("Time a booking lock is held")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder bookingAdmissionMetrics(ObjectProvider<BookingAdmissionInterceptor> bookingAdmissionInterceptor) {
+        return registry -> bookingAdmissionInterceptor.ifAvailable(admission -> {
+            Gauge.builder("campsite.booking.admission.in-flight", admission, BookingAdmissionInterceptor::getInFlightCount)
+                    .description("Booking requests being processed")
+                    .register(registry);
+            Gauge.builder("campsite.booking.admission.waiting", admission, BookingAdmissionInterceptor::getWaitingCount)
+                    .description("Booking requests waiting for their turn")
+                    .register(registry);
+            FunctionCounter.builder("campsite.booking.admission.rejected", admission, BookingAdmissionInterceptor::getRejectedCount)
+                    .description("Booking requests turned away with a 503")
+                    .register(registry);
+        });
+    }
+
+    @Bean
+    public MeterBinder availabilityCacheMetrics(AvailabilityCache availabilityCache) {
+        return registry -> {
+            FunctionCounter.builder("campsite.availability.cache.requests", availabilityCache, AvailabilityCache::getHitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("campsite.availability.cache.requests", availabilityCache, AvailabilityCache::getMissCount)
+                    .tag("result", "miss")
+                    .register(registry);
+        };
+    }
+}
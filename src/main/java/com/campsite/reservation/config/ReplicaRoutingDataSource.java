@@ -0,0 +1,84 @@
+package com.campsite.reservation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends the read-only transactions to the replicas, in turn, and everything else to the primary.
+ * The key is looked up when a connection is obtained, which must be deferred to the first statement with a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} as the read-only flag of a transaction
+ * is only known once it has begun.
+ * <p>
+ * The availability re-check done while holding the booking lock runs inside the booking transaction, so it always
+ * reads the primary. Reads that must see the latest commits outside of a write transaction run {@link #onPrimary}.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Integer> PRIMARY_SCOPES = new ThreadLocal<>();
+
+    private final List<String> replicaKeys = new ArrayList<>();
+
+    private final List<HikariDataSource> replicas;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    /**
+     * @param primary the data source of the writes
+     * @param replicas the pools of the replicas, closed along with this data source
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicas) {
+        this.replicas = replicas;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaKeys.add("replica-" + i);
+            targets.put(replicaKeys.get(i), replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    /**
+     * Runs the work against the primary even in read-only transactions, e.g. to rebuild a cache right after a commit.
+     * Only the transactions begun inside the work are affected
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        Integer scopes = PRIMARY_SCOPES.get();
+        PRIMARY_SCOPES.set(scopes == null ? 1 : scopes + 1);
+        try {
+            return work.get();
+        } finally {
+            if (scopes == null) {
+                PRIMARY_SCOPES.remove();
+            } else {
+                PRIMARY_SCOPES.set(scopes);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaKeys.isEmpty() || PRIMARY_SCOPES.get() != null
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        return replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size()));
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,26 @@
+package com.campsite.reservation.config;
+
+import com.campsite.reservation.web.BookingAdmissionInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the {@link BookingAdmissionInterceptor}, when enabled, in front of the endpoints that book or move stays
+ */
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    private final ObjectProvider<BookingAdmissionInterceptor> bookingAdmissionInterceptor;
+
+    public WebConfiguration(ObjectProvider<BookingAdmissionInterceptor> bookingAdmissionInterceptor) {
+        this.bookingAdmissionInterceptor = bookingAdmissionInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        bookingAdmissionInterceptor.ifAvailable(interceptor -> registry.addInterceptor(interceptor)
+                .addPathPatterns("/book", "/book/batch", "/modify"));
+    }
+}
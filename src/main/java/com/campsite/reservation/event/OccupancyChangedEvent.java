@@ -0,0 +1,31 @@
+package com.campsite.reservation.event;
+
+import com.campsite.reservation.model.AvailabilityChange;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Published by the occupancy index once it applied a change of the booked nights, made on this node or received
+ * from another one. Listeners deriving what this node serves (e.g. its calendar version) should consume it rather
+ * than {@link ReservationChangedEvent}, which is only published on the node making the change.
+ */
+@Getter
+public class OccupancyChangedEvent {
+
+    /**
+     * Codes of the campsites whose booked nights changed
+     */
+    private final Set<String> campsites;
+
+    /**
+     * The nights released or booked, in the order they were applied
+     */
+    private final List<AvailabilityChange> changes;
+
+    public OccupancyChangedEvent(Set<String> campsites, List<AvailabilityChange> changes) {
+        this.campsites = campsites;
+        this.changes = changes;
+    }
+}
@@ -0,0 +1,83 @@
+package com.campsite.reservation.event;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Published by the reservation service whenever a reservation is created, modified or cancelled.
+ * Listeners that keep derived state (e.g. the occupancy index) should consume it after commit.
+ * The occupancy index forwards it to the other nodes, which see it as an {@link OccupancyChangedEvent}.
+ */
+@Getter
+public class ReservationChangedEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum TYPE {
+        CREATED,
+        MODIFIED,
+        CANCELLED,
+    }
+
+    private final TYPE type;
+
+    private final String reservationId;
+
+    /**
+     * Code of the campsite before the change, null for {@link TYPE#CREATED}
+     */
+    private final String previousCampsite;
+
+    /**
+     * Code of the campsite after the change, null for {@link TYPE#CANCELLED}
+     */
+    private final String campsite;
+
+    /**
+     * The stay before the change, null for {@link TYPE#CREATED}
+     */
+    private final LocalDate previousArrivalDate;
+
+    private final LocalDate previousDepartureDate;
+
+    /**
+     * The stay after the change, null for {@link TYPE#CANCELLED}
+     */
+    private final LocalDate arrivalDate;
+
+    private final LocalDate departureDate;
+
+    private ReservationChangedEvent(TYPE type, String reservationId, String previousCampsite,
+                                    LocalDate previousArrivalDate, LocalDate previousDepartureDate, String campsite,
+                                    LocalDate arrivalDate, LocalDate departureDate) {
+        this.type = type;
+        this.reservationId = reservationId;
+        this.previousCampsite = previousCampsite;
+        this.campsite = campsite;
+        this.previousArrivalDate = previousArrivalDate;
+        this.previousDepartureDate = previousDepartureDate;
+        this.arrivalDate = arrivalDate;
+        this.departureDate = departureDate;
+    }
+
+    public static ReservationChangedEvent created(String reservationId, String campsite, LocalDate arrivalDate,
+                                                  LocalDate departureDate) {
+        return new ReservationChangedEvent(TYPE.CREATED, reservationId, null, null, null, campsite, arrivalDate,
+                departureDate);
+    }
+
+    public static ReservationChangedEvent modified(String reservationId, String previousCampsite,
+                                                   LocalDate previousArrivalDate, LocalDate previousDepartureDate,
+                                                   String campsite, LocalDate arrivalDate, LocalDate departureDate) {
+        return new ReservationChangedEvent(TYPE.MODIFIED, reservationId, previousCampsite, previousArrivalDate,
+                previousDepartureDate, campsite, arrivalDate, departureDate);
+    }
+
+    public static ReservationChangedEvent cancelled(String reservationId, String campsite, LocalDate arrivalDate,
+                                                    LocalDate departureDate) {
+        return new ReservationChangedEvent(TYPE.CANCELLED, reservationId, campsite, arrivalDate, departureDate, null,
+                null, null);
+    }
+}
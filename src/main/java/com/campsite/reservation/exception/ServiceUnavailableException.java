@@ -0,0 +1,29 @@
+package com.campsite.reservation.exception;
+
+/**
+ * The booking could not be attempted because too many bookings are in progress, the client should retry later
+ */
+public class ServiceUnavailableException extends ReservationException {
+
+    private static final String OVERLOADED = "booking-overloaded";
+
+    private static final String LOCK_TIMEOUT = "booking-lock-timeout";
+
+    private static final String TIMEOUT = "booking-timeout";
+
+    private ServiceUnavailableException(String message, String errorCode) {
+        super(message, errorCode);
+    }
+
+    public static ServiceUnavailableException overloaded(String message) {
+        return new ServiceUnavailableException(message, OVERLOADED);
+    }
+
+    public static ServiceUnavailableException lockTimeout(String message) {
+        return new ServiceUnavailableException(message, LOCK_TIMEOUT);
+    }
+
+    public static ServiceUnavailableException timeout(String message) {
+        return new ServiceUnavailableException(message, TIMEOUT);
+    }
+}
@@ -0,0 +1,47 @@
+package com.campsite.reservation.lock;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the wait and hold timings around the locks of the concrete implementation
+ */
+public abstract class AbstractBookingLockManager implements BookingLockManager {
+
+    private final BookingLockStatistics statistics = new BookingLockStatistics();
+
+    @Override
+    public final BookingLock tryLock(String campsite, LocalDate startDate, LocalDate endDate, long timeout,
+                                     TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        statistics.recordWaiting();
+        BookingLock lock;
+        try {
+            lock = doTryLock(campsite, startDate, endDate, timeout, unit);
+        } catch (InterruptedException | RuntimeException e) {
+            statistics.recordAbandoned();
+            throw e;
+        }
+        long acquiredAt = System.nanoTime();
+        if (lock == null) {
+            statistics.recordTimeout(acquiredAt - start);
+            return null;
+        }
+        statistics.recordAcquired(acquiredAt - start);
+        return () -> {
+            try {
+                lock.close();
+            } finally {
+                statistics.recordReleased(System.nanoTime() - acquiredAt);
+            }
+        };
+    }
+
+    @Override
+    public BookingLockStatistics getStatistics() {
+        return statistics;
+    }
+
+    protected abstract BookingLock doTryLock(String campsite, LocalDate startDate, LocalDate endDate, long timeout,
+                                             TimeUnit unit) throws InterruptedException;
+}
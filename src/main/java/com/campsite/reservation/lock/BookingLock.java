@@ -0,0 +1,10 @@
+package com.campsite.reservation.lock;
+
+/**
+ * Handle on the locks held for a booking, closing it releases them
+ */
+public interface BookingLock extends AutoCloseable {
+
+    @Override
+    void close();
+}
@@ -0,0 +1,28 @@
+package com.campsite.reservation.lock;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes bookings that could conflict with each other
+ */
+public interface BookingLockManager {
+
+    /**
+     * Acquires the lock(s) covering the nights of the campsite from startDate (inclusive) to endDate (exclusive).
+     * Bookings of different campsites never share a lock.
+     * @param campsite the code of the campsite
+     * @param startDate the arrival date of the booking
+     * @param endDate the departure date of the booking
+     * @param timeout the maximum time to wait for the lock(s)
+     * @param unit the unit of the timeout
+     * @return the {@link BookingLock} to close once the booking is done or null if the lock could not be acquired in time
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    BookingLock tryLock(String campsite, LocalDate startDate, LocalDate endDate, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * @return the wait and hold timings of the locks handed out by this manager
+     */
+    BookingLockStatistics getStatistics();
+}
@@ -0,0 +1,97 @@
+package com.campsite.reservation.lock;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock wait and hold timings of a {@link BookingLockManager}
+ */
+@Slf4j
+public class BookingLockStatistics {
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final LongAdder acquired = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder released = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    private final LongAdder holdNanos = new LongAdder();
+
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    private final LongAccumulator maxHoldNanos = new LongAccumulator(Math::max, 0);
+
+    void recordWaiting() {
+        waiting.incrementAndGet();
+    }
+
+    void recordAbandoned() {
+        waiting.decrementAndGet();
+    }
+
+    void recordAcquired(long waitTime) {
+        waiting.decrementAndGet();
+        acquired.increment();
+        waitNanos.add(waitTime);
+        maxWaitNanos.accumulate(waitTime);
+        log.debug("Booking lock acquired after {} ms", TimeUnit.NANOSECONDS.toMillis(waitTime));
+    }
+
+    void recordTimeout(long waitTime) {
+        waiting.decrementAndGet();
+        timeouts.increment();
+        waitNanos.add(waitTime);
+        maxWaitNanos.accumulate(waitTime);
+        log.warn("Booking lock not acquired after {} ms", TimeUnit.NANOSECONDS.toMillis(waitTime));
+    }
+
+    void recordReleased(long holdTime) {
+        released.increment();
+        holdNanos.add(holdTime);
+        maxHoldNanos.accumulate(holdTime);
+        log.debug("Booking lock released after {} ms", TimeUnit.NANOSECONDS.toMillis(holdTime));
+    }
+
+    /**
+     * @return the number of threads of this JVM currently waiting for a booking lock
+     */
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+    public long getAcquiredCount() {
+        return acquired.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    public long getTotalWaitTime(TimeUnit unit) {
+        return unit.convert(waitNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxWaitTime(TimeUnit unit) {
+        return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getReleasedCount() {
+        return released.sum();
+    }
+
+    public long getTotalHoldTime(TimeUnit unit) {
+        return unit.convert(holdNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxHoldTime(TimeUnit unit) {
+        return unit.convert(maxHoldNanos.get(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,106 @@
+package com.campsite.reservation.lock;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.lock.FencedLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster wide booking locks on top of the Hazelcast CP subsystem. There is one {@link FencedLock} per campsite
+ * and week so bookings of other campsites or of other weeks do not contend, whichever node they are served from.
+ * Locks are always taken in ascending week order to avoid deadlocks between overlapping bookings.
+ * <p>
+ * Nothing can be booked in a past week, the locks of past weeks used by this node are destroyed every night
+ * so that the CP objects do not pile up.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "campsite.lock", name = "mode", havingValue = "hazelcast")
+public class HazelcastBookingLockManager extends AbstractBookingLockManager {
+
+    private final HazelcastInstance hazelcastInstance;
+
+    private static final int WEEK = 7;
+
+    private final String namePrefix;
+
+    /**
+     * Names of the locks used by this node by week
+     */
+    private final NavigableMap<Long, Set<String>> lockNames = new ConcurrentSkipListMap<>();
+
+    public HazelcastBookingLockManager(HazelcastInstance hazelcastInstance, CampsiteProperties properties) {
+        this.hazelcastInstance = hazelcastInstance;
+        this.namePrefix = properties.getLock().getNamePrefix();
+    }
+
+    @Override
+    protected BookingLock doTryLock(String campsite, LocalDate startDate, LocalDate endDate, long timeout,
+                                    TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Deque<FencedLock> acquired = new ArrayDeque<>();
+        boolean success = false;
+        try {
+            for (long week = weekOf(startDate); week <= weekOf(endDate.minusDays(1)); week++) {
+                FencedLock lock = hazelcastInstance.getCPSubsystem().getLock(lockName(campsite, week));
+                if (!lock.tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    log.debug("Timed out waiting for booking lock of {} in the week of {}", campsite, LocalDate.ofEpochDay(week * WEEK));
+                    return null;
+                }
+                acquired.push(lock);
+            }
+            success = true;
+            return () -> unlockAll(acquired);
+        } finally {
+            if (!success) {
+                unlockAll(acquired);
+            }
+        }
+    }
+
+    /**
+     * Destroys the locks of the weeks before the current one
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    public void destroyPastLocks() {
+        Map<Long, Set<String>> pastWeeks = lockNames.headMap(weekOf(LocalDate.now()));
+        pastWeeks.values().forEach(names -> names.forEach(name -> {
+            try {
+                hazelcastInstance.getCPSubsystem().getLock(name).destroy();
+            } catch (RuntimeException e) {
+                //destroyed by another node already
+                log.debug("Unable to destroy booking lock {}: {}", name, e.getMessage());
+            }
+        }));
+        pastWeeks.clear();
+    }
+
+    private String lockName(String campsite, long week) {
+        String name = namePrefix + campsite + "-" + week;
+        lockNames.computeIfAbsent(week, key -> ConcurrentHashMap.newKeySet()).add(name);
+        return name;
+    }
+
+    private static long weekOf(LocalDate date) {
+        return Math.floorDiv(date.toEpochDay(), WEEK);
+    }
+
+    private void unlockAll(Deque<FencedLock> locks) {
+        while (!locks.isEmpty()) {
+            locks.pop().unlock();
+        }
+    }
+}
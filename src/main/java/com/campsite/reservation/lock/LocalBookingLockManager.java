@@ -0,0 +1,30 @@
+package com.campsite.reservation.lock;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the bookings of each campsite in this JVM with one fair lock per campsite
+ */
+@Component
+@ConditionalOnProperty(prefix = "campsite.lock", name = "mode", havingValue = "local", matchIfMissing = true)
+public class LocalBookingLockManager extends AbstractBookingLockManager {
+
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    @Override
+    protected BookingLock doTryLock(String campsite, LocalDate startDate, LocalDate endDate, long timeout,
+                                    TimeUnit unit) throws InterruptedException {
+        ReentrantLock lock = locks.computeIfAbsent(campsite, code -> new ReentrantLock(true));
+        if (!lock.tryLock(timeout, unit)) {
+            return null;
+        }
+        return lock::unlock;
+    }
+}
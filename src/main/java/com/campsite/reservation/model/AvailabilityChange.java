@@ -0,0 +1,33 @@
+package com.campsite.reservation.model;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Nights of a campsite that became available or booked, pushed to the clients of the availability stream
+ */
+@Getter
+public class AvailabilityChange implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String campsite;
+
+    private final LocalDate startDate;
+
+    private final LocalDate endDate;
+
+    /**
+     * True when the nights from startDate (inclusive) to endDate (exclusive) were released, false when booked
+     */
+    private final boolean available;
+
+    public AvailabilityChange(String campsite, LocalDate startDate, LocalDate endDate, boolean available) {
+        this.campsite = campsite;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.available = available;
+    }
+}
@@ -0,0 +1,27 @@
+package com.campsite.reservation.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * POJO for booking several stays at once
+ */
+@Getter
+@Setter
+public class BatchReservationDTO {
+
+    /**
+     * A night can only be booked once and reservations are at most a month ahead
+     */
+    public static final int MAX_RESERVATIONS = 30;
+
+    @Valid
+    @NotEmpty(message = "At least one reservation is required")
+    @Size(max = MAX_RESERVATIONS, message = "A maximum of " + MAX_RESERVATIONS + " reservations can be booked at once")
+    private List<ReservationDTO> reservations;
+}
@@ -0,0 +1,37 @@
+package com.campsite.reservation.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * A bookable site of the campground, reservations of different campsites never conflict
+ */
+@Table(name = "camp_site", uniqueConstraints = @UniqueConstraint(columnNames = "code", name = "uk_camp_site_code"))
+@Entity
+@Setter
+@Getter
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "camp_site")
+public class Campsite extends BaseEntity {
+
+    /**
+     * Code of the campsite used when a request does not name one, it also holds the reservations made
+     * before the campground had several campsites
+     */
+    public static final String DEFAULT_CODE = "default";
+
+    /**
+     * The public identifier of the campsite, e.g. "A12"
+     */
+    @Column(nullable = false, length = 64)
+    private String code;
+
+    @Column(nullable = false)
+    private String name;
+}
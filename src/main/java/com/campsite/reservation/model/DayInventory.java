@@ -0,0 +1,37 @@
+package com.campsite.reservation.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+import java.time.LocalDate;
+
+/**
+ * A bookable night of a campsite. Bookings made in inventory mode claim their nights by incrementing the version,
+ * two bookings sharing a night cannot both commit
+ */
+@Table(name = "camp_day_inventory", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"campsite_id", "stay_date"}, name = "uk_campsite_stay_date")
+})
+@Entity
+@Setter
+@Getter
+public class DayInventory extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "campsite_id")
+    private Campsite campsite;
+
+    @Column(name = "stay_date", nullable = false)
+    private LocalDate stayDate;
+
+    @Version
+    private long version;
+}
@@ -0,0 +1,98 @@
+package com.campsite.reservation.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The booked nights of every campsite once the journal entries up to lastEntryId are applied, one bit per night
+ * from the origin date. A year of a campsite takes 46 bytes
+ */
+@Table(name = "occupancy_snapshot")
+@Entity
+@Setter
+@Getter
+public class OccupancySnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    /**
+     * Night represented by bit 0
+     */
+    @Column(name = "origin_date", nullable = false)
+    private LocalDate originDate;
+
+    /**
+     * Last {@link ReservationJournalEntry} applied, 0 for none
+     */
+    @Column(name = "last_entry_id", nullable = false)
+    private long lastEntryId;
+
+    @Column(name = "taken_at", nullable = false)
+    private OffsetDateTime takenAt;
+
+    @Column(name = "nights", columnDefinition = "bytea", nullable = false)
+    private byte[] nights;
+
+    /**
+     * @param bookedNights the booked nights by campsite code, bit 0 being the origin date
+     */
+    public static OccupancySnapshot of(LocalDate originDate, long lastEntryId, Map<String, BitSet> bookedNights) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(bookedNights.size());
+            for (Map.Entry<String, BitSet> campsite : bookedNights.entrySet()) {
+                byte[] nights = campsite.getValue().toByteArray();
+                out.writeUTF(campsite.getKey());
+                out.writeInt(nights.length);
+                out.write(nights);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        OccupancySnapshot snapshot = new OccupancySnapshot();
+        snapshot.setOriginDate(originDate);
+        snapshot.setLastEntryId(lastEntryId);
+        snapshot.setTakenAt(OffsetDateTime.now());
+        snapshot.setNights(bytes.toByteArray());
+        return snapshot;
+    }
+
+    /**
+     * @return the booked nights by campsite code, bit 0 being the origin date
+     */
+    public Map<String, BitSet> bookedNights() {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(nights))) {
+            int campsites = in.readInt();
+            Map<String, BitSet> bookedNights = new HashMap<>();
+            for (int i = 0; i < campsites; i++) {
+                String code = in.readUTF();
+                byte[] nights = new byte[in.readInt()];
+                in.readFully(nights);
+                bookedNights.put(code, BitSet.valueOf(nights));
+            }
+            return bookedNights;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
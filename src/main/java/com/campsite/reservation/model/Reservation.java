@@ -9,6 +9,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
@@ -16,9 +17,11 @@ import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 import java.time.LocalDate;
 
-@Table(name = "camp_reservation", indexes = @Index(columnList = "reservationId", name = "idx_reservation_id"),
-        uniqueConstraints = {
-        @UniqueConstraint(columnNames = {"arrival_date", "departure_date"}, name = "uk_arrival_departure")
+@Table(name = "camp_reservation", indexes = {
+        @Index(columnList = "campsite_id, arrival_date", name = "idx_campsite_arrival")
+}, uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"reservationId"}, name = "uk_reservation_id"),
+        @UniqueConstraint(columnNames = {"campsite_id", "arrival_date", "departure_date"}, name = "uk_campsite_arrival_departure")
 })
 @Entity
 @Setter
@@ -32,13 +35,20 @@ public class Reservation extends BaseEntity {
         ACTIVE,
     }
 
-    @Column
+    /**
+     * The booking reference, time ordered for new reservations and a UUID for the older ones
+     */
+    @Column(length = 36)
     private String reservationId;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "campsite_id")
+    private Campsite campsite;
+
     @Column(name = "arrival_date")
     private LocalDate arrivalDate;
 
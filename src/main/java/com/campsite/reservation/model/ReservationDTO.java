@@ -7,6 +7,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 import java.time.LocalDate;
 
 /**
@@ -22,6 +23,12 @@ public class ReservationDTO {
     @Email(message = "Please provide a valid email address")
     private String email;
 
+    /**
+     * Code of the campsite to book, the default campsite if not provided
+     */
+    @Size(max = 64, message = "Campsite code cannot be longer than 64 characters")
+    private String campsite;
+
     @NotNull(message = "Check in date is required")
     @DateTimeFormat(pattern = "yyyy-MM-dd")
     private LocalDate checkInDate;
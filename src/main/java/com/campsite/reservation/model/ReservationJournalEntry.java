@@ -0,0 +1,90 @@
+package com.campsite.reservation.model;
+
+import com.campsite.reservation.event.ReservationChangedEvent;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+/**
+ * A change of a reservation, appended to the journal in the transaction of the change and never updated.
+ * Ids come from an identity column rather than blocks of a sequence, so they follow the order of the inserts
+ * across all the nodes
+ */
+@Table(name = "reservation_journal")
+@Entity
+@Setter
+@Getter
+public class ReservationJournalEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", length = 16, nullable = false)
+    private ReservationChangedEvent.TYPE type;
+
+    @Column(length = 36, nullable = false)
+    private String reservationId;
+
+    @Column(name = "previous_campsite")
+    private String previousCampsite;
+
+    @Column(name = "previous_arrival_date")
+    private LocalDate previousArrivalDate;
+
+    @Column(name = "previous_departure_date")
+    private LocalDate previousDepartureDate;
+
+    @Column(name = "campsite")
+    private String campsite;
+
+    @Column(name = "arrival_date")
+    private LocalDate arrivalDate;
+
+    @Column(name = "departure_date")
+    private LocalDate departureDate;
+
+    /**
+     * Clock of the node that made the change
+     */
+    @Column(name = "recorded_at", nullable = false)
+    private OffsetDateTime recordedAt;
+
+    public static ReservationJournalEntry of(ReservationChangedEvent event) {
+        ReservationJournalEntry entry = new ReservationJournalEntry();
+        entry.setType(event.getType());
+        entry.setReservationId(event.getReservationId());
+        entry.setPreviousCampsite(event.getPreviousCampsite());
+        entry.setPreviousArrivalDate(event.getPreviousArrivalDate());
+        entry.setPreviousDepartureDate(event.getPreviousDepartureDate());
+        entry.setCampsite(event.getCampsite());
+        entry.setArrivalDate(event.getArrivalDate());
+        entry.setDepartureDate(event.getDepartureDate());
+        entry.setRecordedAt(OffsetDateTime.now());
+        return entry;
+    }
+
+    public ReservationChangedEvent toEvent() {
+        switch (type) {
+            case CREATED:
+                return ReservationChangedEvent.created(reservationId, campsite, arrivalDate, departureDate);
+            case MODIFIED:
+                return ReservationChangedEvent.modified(reservationId, previousCampsite, previousArrivalDate,
+                        previousDepartureDate, campsite, arrivalDate, departureDate);
+            default:
+                return ReservationChangedEvent.cancelled(reservationId, previousCampsite, previousArrivalDate,
+                        previousDepartureDate);
+        }
+    }
+}
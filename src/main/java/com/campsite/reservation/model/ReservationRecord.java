@@ -0,0 +1,57 @@
+package com.campsite.reservation.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * A reservation as stored in the Hazelcast map of the write-behind booking mode, keyed by its booking reference.
+ * It carries the codes and the user details rather than the entities so that it can be written without them.
+ * Equal when all their fields are, which is how the map compares the value a modification replaces
+ */
+@Getter
+@EqualsAndHashCode
+public class ReservationRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String reservationId;
+
+    private final String campsite;
+
+    private final LocalDate arrivalDate;
+
+    private final LocalDate departureDate;
+
+    private final String email;
+
+    private final String fullName;
+
+    public ReservationRecord(String reservationId, String campsite, LocalDate arrivalDate, LocalDate departureDate,
+                             String email, String fullName) {
+        this.reservationId = reservationId;
+        this.campsite = campsite;
+        this.arrivalDate = arrivalDate;
+        this.departureDate = departureDate;
+        this.email = email;
+        this.fullName = fullName;
+    }
+
+    /**
+     * @param reservation a reservation with its user and campsite
+     */
+    public static ReservationRecord of(Reservation reservation) {
+        return new ReservationRecord(reservation.getReservationId(), reservation.getCampsite().getCode(),
+                reservation.getArrivalDate(), reservation.getDepartureDate(), reservation.getUser().getEmail(),
+                reservation.getUser().getFullName());
+    }
+
+    /**
+     * @return the same reservation at other dates, possibly on another campsite
+     */
+    public ReservationRecord moveTo(String campsite, LocalDate arrivalDate, LocalDate departureDate) {
+        return new ReservationRecord(reservationId, campsite, arrivalDate, departureDate, email, fullName);
+    }
+}
@@ -18,6 +18,11 @@ public class ReservationResponseDTO {
 
     private String fullName;
 
+    /**
+     * The code of the booked campsite
+     */
+    private String campsite;
+
     private Date checkInDate;
 
     private Date checkoutDate;
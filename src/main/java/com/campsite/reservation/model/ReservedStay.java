@@ -0,0 +1,21 @@
+package com.campsite.reservation.model;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * The booked nights of a reservation, read without loading the {@link Reservation} or its {@link User}
+ */
+@Getter
+public class ReservedStay {
+
+    private final LocalDate arrivalDate;
+
+    private final LocalDate departureDate;
+
+    public ReservedStay(LocalDate arrivalDate, LocalDate departureDate) {
+        this.arrivalDate = arrivalDate;
+        this.departureDate = departureDate;
+    }
+}
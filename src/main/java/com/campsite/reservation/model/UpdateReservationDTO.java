@@ -3,6 +3,7 @@ package com.campsite.reservation.model;
 import lombok.Data;
 
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 import java.time.LocalDate;
 
 /**
@@ -14,6 +15,12 @@ public class UpdateReservationDTO {
     @NotNull(message = "Booking reference cannot be null")
     private String bookingReferenceId;
 
+    /**
+     * the code of the campsite to move to, the reservation stays on its campsite if not provided
+     */
+    @Size(max = 64, message = "Campsite code cannot be longer than 64 characters")
+    private String campsite;
+
     /**
      * the new check in date
      */
@@ -4,30 +4,40 @@ import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
-import javax.persistence.Index;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 import java.util.HashSet;
 import java.util.Set;
 
-@Table(name = "user_info", indexes = @Index(columnList = "email", name = "idx_email"))
+@Table(name = "user_info", uniqueConstraints = @UniqueConstraint(columnNames = "email", name = "uk_user_email"))
 @Entity
 @Setter
 @Getter
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user_info")
+@NaturalIdCache(region = "user_info")
 public class User extends BaseEntity {
 
+    /**
+     * Unique, bookings resolve the user by email through the natural id cache
+     */
+    @NaturalId
     @Column(nullable = false)
     private String email;
 
     @Column(nullable = false)
     private String fullName;
 
+    /**
+     * Never loaded when booking, reservations are saved on their own
+     */
     @OneToMany(orphanRemoval = true, cascade = {CascadeType.ALL},
             mappedBy = "user", fetch = FetchType.LAZY)
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "reservation")
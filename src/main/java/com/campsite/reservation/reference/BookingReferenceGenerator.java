@@ -0,0 +1,12 @@
+package com.campsite.reservation.reference;
+
+/**
+ * Generates the booking references handed out to campers
+ */
+public interface BookingReferenceGenerator {
+
+    /**
+     * @return a new booking reference, unique across the application instances
+     */
+    String next();
+}
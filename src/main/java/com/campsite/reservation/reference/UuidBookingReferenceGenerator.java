@@ -0,0 +1,19 @@
+package com.campsite.reservation.reference;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Random UUID references, as handed out before time ordered references were introduced
+ */
+@Component
+@ConditionalOnProperty(prefix = "campsite.reference", name = "mode", havingValue = "uuid")
+public class UuidBookingReferenceGenerator implements BookingReferenceGenerator {
+
+    @Override
+    public String next() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,11 @@
+package com.campsite.reservation.repository;
+
+import com.campsite.reservation.model.Campsite;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface CampsiteRepository extends JpaRepository<Campsite, Long> {
+
+    Optional<Campsite> findCampsiteByCode(String code);
+}
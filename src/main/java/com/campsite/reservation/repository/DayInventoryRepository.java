@@ -0,0 +1,21 @@
+package com.campsite.reservation.repository;
+
+import com.campsite.reservation.model.DayInventory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DayInventoryRepository extends JpaRepository<DayInventory, Long> {
+
+    /**
+     * Reads the nights of a stay without locking them, their versions are incremented when the transaction commits
+     * and the commit fails if another transaction incremented one of them first
+     */
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    @Query(" select day from DayInventory day where day.campsite.code = :campsite and day.stayDate >= :start and day.stayDate < :end order by day.stayDate ")
+    List<DayInventory> claimDays(String campsite, LocalDate start, LocalDate end);
+}
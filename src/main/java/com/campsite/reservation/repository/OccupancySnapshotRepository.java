@@ -0,0 +1,17 @@
+package com.campsite.reservation.repository;
+
+import com.campsite.reservation.model.OccupancySnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface OccupancySnapshotRepository extends JpaRepository<OccupancySnapshot, Long> {
+
+    Optional<OccupancySnapshot> findFirstByOrderByLastEntryIdDescIdDesc();
+
+    @Modifying
+    @Query(" delete from OccupancySnapshot snapshot where snapshot.id < :snapshotId ")
+    int deleteSnapshotsBefore(long snapshotId);
+}
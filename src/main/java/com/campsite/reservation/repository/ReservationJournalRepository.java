@@ -0,0 +1,31 @@
+package com.campsite.reservation.repository;
+
+import com.campsite.reservation.model.ReservationJournalEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface ReservationJournalRepository extends JpaRepository<ReservationJournalEntry, Long> {
+
+    @Query(" select entry from ReservationJournalEntry entry where entry.id > :entryId order by entry.id ")
+    List<ReservationJournalEntry> retrieveEntriesAfter(long entryId);
+
+    /**
+     * @return the id of the first entry recorded at or after the given time, null if there is none
+     */
+    @Query(" select min(entry.id) from ReservationJournalEntry entry where entry.recordedAt >= :recordedAt ")
+    Long retrieveFirstEntryIdSince(OffsetDateTime recordedAt);
+
+    /**
+     * @return the id of the last entry, null if the journal is empty
+     */
+    @Query(" select max(entry.id) from ReservationJournalEntry entry ")
+    Long retrieveLastEntryId();
+
+    @Modifying
+    @Query(" delete from ReservationJournalEntry entry where entry.id <= :entryId ")
+    int deleteEntriesUpTo(long entryId);
+}
@@ -1,18 +1,74 @@
 package com.campsite.reservation.repository;
 
+import com.campsite.reservation.model.Campsite;
 import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservedStay;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import javax.persistence.LockModeType;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ReservationRepository extends JpaRepository<Reservation,Long> {
 
-    @Query(" select res from Reservation res where res.arrivalDate >= :start " +
-            "and res.departureDate <= :end order by res.arrivalDate asc ")
-    List<Reservation> retrieveReservationForDates(LocalDate start, LocalDate end);
+    /**
+     * Reads only the dates of the matching reservations, neither the entities nor their users are loaded
+     * @return the stays of the campsite overlapping start and end in order of arrival, including those
+     * that begin before start or end after end
+     */
+    @Query(" select new com.campsite.reservation.model.ReservedStay(res.arrivalDate, res.departureDate) from Reservation res " +
+            "where res.campsite.code = :campsite and res.arrivalDate < :end and res.departureDate > :start " +
+            "order by res.arrivalDate asc ")
+    List<ReservedStay> retrieveStaysForDates(String campsite, LocalDate start, LocalDate end);
 
+    /**
+     * @return the stays of the campsite departing after date, in no particular order
+     */
+    @Query(" select new com.campsite.reservation.model.ReservedStay(res.arrivalDate, res.departureDate) from Reservation res " +
+            "where res.campsite.code = :campsite and res.departureDate > :date ")
+    List<ReservedStay> retrieveStaysDepartingAfter(String campsite, LocalDate date);
+
+    @Query(" select res from Reservation res join fetch res.campsite where res.departureDate > :date ")
+    List<Reservation> retrieveReservationsDepartingAfter(LocalDate date);
+
+    @Query(" select res.reservationId from Reservation res where res.departureDate > :date ")
+    List<String> retrieveReservationIdsDepartingAfter(LocalDate date);
+
+    @Query(" select res from Reservation res join fetch res.campsite where res.arrivalDate < :end and res.departureDate > :start ")
+    List<Reservation> retrieveReservationsOverlapping(LocalDate start, LocalDate end);
+
+    @Query(" select distinct res.campsite.code from Reservation res where res.arrivalDate < :end and res.departureDate > :start ")
+    List<String> retrieveBookedCampsites(LocalDate start, LocalDate end);
+
+    /**
+     * Assigns the reservations made before campsites existed to the provided campsite
+     * @return the number of reservations updated
+     */
+    @Modifying
+    @Query(" update Reservation res set res.campsite = :campsite where res.campsite is null ")
+    int assignCampsiteWhereMissing(Campsite campsite);
+
+    /**
+     * Fetches the user and the campsite along, they are needed to answer and to publish the change
+     */
+    @EntityGraph(attributePaths = {"user", "campsite"})
     Optional<Reservation> findReservationByReservationId(String reservationId);
+
+    /**
+     * Locks the row of the reservation until the transaction ends, concurrent changes of the reservation wait for
+     * its commit and then read what it wrote. Nothing is fetched along, the rows of the user and the campsite are
+     * not locked
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(" select res from Reservation res where res.reservationId = :reservationId ")
+    Optional<Reservation> findReservationForUpdate(String reservationId);
+
+    @EntityGraph(attributePaths = {"user", "campsite"})
+    List<Reservation> findReservationsByReservationIdIn(Collection<String> reservationIds);
 }
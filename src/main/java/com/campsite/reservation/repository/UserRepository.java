@@ -3,9 +3,13 @@ package com.campsite.reservation.repository;
 import com.campsite.reservation.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     Optional<User> findUserByEmail(String email);
+
+    List<User> findUsersByEmailIn(Collection<String> emails);
 }
@@ -0,0 +1,18 @@
+package com.campsite.reservation.repository;
+
+import com.campsite.reservation.model.User;
+
+/**
+ * Write path of the users that Spring Data cannot derive
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Resolves the user of an email, inserting it first if it is not known. The email is the natural id of the user,
+     * a returning camper is resolved from the natural id cache of the user_info region without a query
+     * @param email the email of the user
+     * @param fullName the name of the user, only used when it is inserted
+     * @return the managed user, its reservations are not loaded
+     */
+    User upsertUser(String email, String fullName);
+}
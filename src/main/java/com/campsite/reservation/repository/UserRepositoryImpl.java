@@ -0,0 +1,51 @@
+package com.campsite.reservation.repository;
+
+import com.campsite.reservation.model.User;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Inserts first time campers with a single statement that does nothing when a concurrent booking inserted the same
+ * email first, so no booking fails on the unique email constraint
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private static final String INSERT_IF_ABSENT = "insert into user_info (id, email, full_name, created_date, updated_date) " +
+            "values (?, ?, ?, ?, ?) on conflict do nothing";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public User upsertUser(String email, String fullName) {
+        Session session = entityManager.unwrap(Session.class);
+        User user = session.bySimpleNaturalId(User.class).load(email);
+        if (user != null) {
+            return user;
+        }
+        SessionImplementor sessionImplementor = entityManager.unwrap(SessionImplementor.class);
+        //the id comes from the user_seq block of this node, as for the users saved through Hibernate
+        Serializable id = sessionImplementor.getFactory().getMetamodel().entityPersister(User.class)
+                .getIdentifierGenerator().generate(sessionImplementor, null);
+        //sent over JDBC as a native query would evict the whole user_info cache region
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_IF_ABSENT)) {
+                Timestamp now = Timestamp.from(Instant.now());
+                statement.setLong(1, (Long) id);
+                statement.setString(2, email);
+                statement.setString(3, fullName);
+                statement.setTimestamp(4, now);
+                statement.setTimestamp(5, now);
+                statement.executeUpdate();
+            }
+        });
+        return session.bySimpleNaturalId(User.class).load(email);
+    }
+}
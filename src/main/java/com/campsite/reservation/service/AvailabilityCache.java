@@ -0,0 +1,309 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.config.ReplicaRoutingDataSource;
+import com.campsite.reservation.event.ReservationChangedEvent;
+import com.campsite.reservation.model.AvailableDate;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.IMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Cluster wide cache of {@link AvailableDate}s in a Hazelcast IMap, one entry per campsite holding the requested
+ * (start, end) windows of the campsite and a version moved by every change of the campsite. The entry of a campsite is
+ * only read and updated by {@link EntryProcessor}s on the member owning it: after commit a change evicts the windows
+ * overlapping its nights and moves the version, and a window loaded on a miss is only stored if the version did not
+ * move in the meantime, so a window read before a commit is never stored after its eviction.
+ * Windows expire after campsite.availability-cache.time-to-live in any case.
+ * <p>
+ * The windows are shared by the nodes, the loader should read the database rather than the state of a node.
+ * When campsite.availability-cache.enabled is not set (or Hazelcast is disabled) every lookup is a miss
+ * that calls through to the loader. With a client the members must have the application classes on their classpath
+ * to run the entry processors.
+ */
+@Slf4j
+@Component
+public class AvailabilityCache {
+
+    public static final String MAP_NAME = "campsite-availability";
+
+    private static final String KEY_SEPARATOR = ":";
+
+    /**
+     * Null when the cache is disabled
+     */
+    private final IMap<String, CampsiteWindows> windows;
+
+    private final long timeToLiveMillis;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a disabled cache
+     */
+    public AvailabilityCache() {
+        this.windows = null;
+        this.timeToLiveMillis = 0;
+    }
+
+    @Autowired
+    public AvailabilityCache(ObjectProvider<HazelcastInstance> hazelcastInstance, CampsiteProperties properties) {
+        CampsiteProperties.AvailabilityCache settings = properties.getAvailabilityCache();
+        HazelcastInstance instance = settings.isEnabled() ? hazelcastInstance.getIfAvailable() : null;
+        if (settings.isEnabled() && instance == null) {
+            log.warn("Availability cache is enabled but Hazelcast is not, the cache will not be used");
+        }
+        this.windows = instance == null ? null : instance.getMap(MAP_NAME);
+        this.timeToLiveMillis = settings.getTimeToLive().toMillis();
+    }
+
+    public boolean isEnabled() {
+        return windows != null;
+    }
+
+    /**
+     * Returns the cached available dates of the window, loading and caching them on a miss
+     * @param campsite the code of the campsite
+     * @param startDate the start of the window
+     * @param endDate the end of the window
+     * @param loader reads the available dates of a window
+     * @return the list of {@link AvailableDate}
+     */
+    public List<AvailableDate> get(String campsite, LocalDate startDate, LocalDate endDate,
+                                   BiFunction<LocalDate, LocalDate, List<AvailableDate>> loader) {
+        if (windows == null) {
+            return loader.apply(startDate, endDate);
+        }
+        String window = startDate.toEpochDay() + KEY_SEPARATOR + endDate.toEpochDay();
+        Lookup lookup = windows.executeOnKey(campsite, new GetWindow(window));
+        if (lookup.dates != null) {
+            hits.increment();
+            return decode(lookup.dates);
+        }
+        misses.increment();
+        //cached until the next change, so it must not be read from a replica lagging behind the previous one
+        List<AvailableDate> availableDates = ReplicaRoutingDataSource.onPrimary(() -> loader.apply(startDate, endDate));
+        windows.executeOnKey(campsite, new PutWindow(lookup.version, window, encode(availableDates), timeToLiveMillis));
+        return availableDates;
+    }
+
+    /**
+     * Evicts before the {@link OccupancyIndex} of any node applies the change and moves its {@link CalendarVersion},
+     * a window cached for the new version must not be stale
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (windows == null) {
+            return;
+        }
+        if (event.getPreviousArrivalDate() != null) {
+            evict(event.getPreviousCampsite(), event.getPreviousArrivalDate(), event.getPreviousDepartureDate());
+        }
+        if (event.getArrivalDate() != null) {
+            evict(event.getCampsite(), event.getArrivalDate(), event.getDepartureDate());
+        }
+    }
+
+    /**
+     * Evicts every cached window of the campsite that overlaps the nights from arrivalDate (inclusive)
+     * to departureDate (exclusive)
+     */
+    private void evict(String campsite, LocalDate arrivalDate, LocalDate departureDate) {
+        windows.executeOnKey(campsite, new EvictWindows(arrivalDate.toEpochDay(), departureDate.toEpochDay()));
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static long[] encode(List<AvailableDate> availableDates) {
+        long[] encoded = new long[availableDates.size() * 2];
+        for (int i = 0; i < availableDates.size(); i++) {
+            encoded[2 * i] = availableDates.get(i).getStartDate().toEpochDay();
+            encoded[2 * i + 1] = availableDates.get(i).getEndDate().toEpochDay();
+        }
+        return encoded;
+    }
+
+    private static List<AvailableDate> decode(long[] encoded) {
+        List<AvailableDate> availableDates = new ArrayList<>(encoded.length / 2);
+        for (int i = 0; i < encoded.length; i += 2) {
+            availableDates.add(new AvailableDate(LocalDate.ofEpochDay(encoded[i]), LocalDate.ofEpochDay(encoded[i + 1])));
+        }
+        return availableDates;
+    }
+
+    /**
+     * The cached windows of a campsite
+     */
+    static class CampsiteWindows implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private long version;
+
+        /**
+         * Encoded available dates by window
+         */
+        private final HashMap<String, long[]> dates = new HashMap<>();
+
+        /**
+         * Expiry time in milliseconds by window
+         */
+        private final HashMap<String, Long> expiries = new HashMap<>();
+
+        private void removeExpired(long now) {
+            expiries.entrySet().removeIf(expiry -> {
+                if (expiry.getValue() > now) {
+                    return false;
+                }
+                dates.remove(expiry.getKey());
+                return true;
+            });
+        }
+    }
+
+    /**
+     * The version of the campsite and the window, null if it is not cached
+     */
+    static class Lookup implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long version;
+
+        private final long[] dates;
+
+        Lookup(long version, long[] dates) {
+            this.version = version;
+            this.dates = dates;
+        }
+    }
+
+    static class GetWindow implements EntryProcessor<String, CampsiteWindows, Lookup> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String window;
+
+        GetWindow(String window) {
+            this.window = window;
+        }
+
+        @Override
+        public Lookup process(Map.Entry<String, CampsiteWindows> entry) {
+            CampsiteWindows campsite = entry.getValue();
+            if (campsite == null) {
+                return new Lookup(0, null);
+            }
+            Long expiry = campsite.expiries.get(window);
+            boolean live = expiry != null && expiry > System.currentTimeMillis();
+            return new Lookup(campsite.version, live ? campsite.dates.get(window) : null);
+        }
+
+        /**
+         * Nothing is changed
+         */
+        @Override
+        public EntryProcessor<String, CampsiteWindows, Lookup> getBackupProcessor() {
+            return null;
+        }
+    }
+
+    /**
+     * Stores a window unless the campsite changed since version
+     */
+    static class PutWindow implements EntryProcessor<String, CampsiteWindows, Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long version;
+
+        private final String window;
+
+        private final long[] dates;
+
+        private final long timeToLiveMillis;
+
+        PutWindow(long version, String window, long[] dates, long timeToLiveMillis) {
+            this.version = version;
+            this.window = window;
+            this.dates = dates;
+            this.timeToLiveMillis = timeToLiveMillis;
+        }
+
+        @Override
+        public Void process(Map.Entry<String, CampsiteWindows> entry) {
+            CampsiteWindows campsite = entry.getValue() == null ? new CampsiteWindows() : entry.getValue();
+            if (campsite.version != version) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            campsite.removeExpired(now);
+            campsite.dates.put(window, dates);
+            campsite.expiries.put(window, now + timeToLiveMillis);
+            entry.setValue(campsite);
+            return null;
+        }
+    }
+
+    /**
+     * Moves the version of the campsite and removes its windows overlapping the nights from the epoch day from
+     * (inclusive) to the epoch day to (exclusive)
+     */
+    static class EvictWindows implements EntryProcessor<String, CampsiteWindows, Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+
+        private final long to;
+
+        EvictWindows(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Void process(Map.Entry<String, CampsiteWindows> entry) {
+            CampsiteWindows campsite = entry.getValue() == null ? new CampsiteWindows() : entry.getValue();
+            campsite.version++;
+            campsite.removeExpired(System.currentTimeMillis());
+            campsite.dates.keySet().removeIf(window -> {
+                int separator = window.indexOf(KEY_SEPARATOR);
+                long start = Long.parseLong(window.substring(0, separator));
+                long end = Long.parseLong(window.substring(separator + 1));
+                if (start < to && from < end) {
+                    campsite.expiries.remove(window);
+                    return true;
+                }
+                return false;
+            });
+            entry.setValue(campsite);
+            return null;
+        }
+    }
+}
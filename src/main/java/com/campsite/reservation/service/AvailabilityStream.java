@@ -0,0 +1,131 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.event.OccupancyChangedEvent;
+import com.campsite.reservation.model.AvailabilityChange;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes the availability changes of the bookable window to the clients subscribed to a campsite, as server-sent events.
+ * <p>
+ * Changes are taken from the {@link OccupancyChangedEvent}s of the {@link OccupancyIndex}, which applies the changes of
+ * every node, so a subscriber receives exactly the changes the snapshot it was sent (read from the same node) may not
+ * reflect yet. Events are sent by a single thread so that slow clients never hold up a booking.
+ */
+@Slf4j
+@Component
+public class AvailabilityStream {
+
+    public static final String SNAPSHOT_EVENT = "snapshot";
+
+    public static final String CHANGE_EVENT = "availability";
+
+    private final CampsiteRegistry campsiteRegistry;
+
+    private final long timeoutMillis;
+
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "availability-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AvailabilityStream(CampsiteRegistry campsiteRegistry, CampsiteProperties properties,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
+        this.campsiteRegistry = campsiteRegistry;
+        this.timeoutMillis = properties.getAvailabilityStream().getTimeout().toMillis();
+        //not through a MeterBinder, the registry depends on the repositories which this bean depends on
+        meterRegistry.ifAvailable(registry -> Gauge.builder("campsite.availability.stream.subscribers", this,
+                        AvailabilityStream::getSubscriberCount)
+                .description("Clients subscribed to the availability changes")
+                .register(registry));
+    }
+
+    /**
+     * Registers a client for the changes of the campsite, the caller should then send the current availability
+     * as {@link #SNAPSHOT_EVENT} so that no change falls between the snapshot and the subscription
+     * @param campsite the code of the campsite, the default campsite if null
+     * @throws com.campsite.reservation.exception.ObjectNotFoundException if there is no campsite with this code
+     */
+    public SseEmitter subscribe(String campsite) {
+        String code = campsiteRegistry.resolve(campsite);
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Set<SseEmitter> emitters = subscribers.computeIfAbsent(code, key -> ConcurrentHashMap.newKeySet());
+        emitters.add(emitter);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> emitters.remove(emitter));
+        return emitter;
+    }
+
+    @EventListener
+    public void onOccupancyChanged(OccupancyChangedEvent event) {
+        List<AvailabilityChange> changes = withinBookableWindow(event.getChanges());
+        if (!changes.isEmpty()) {
+            push(changes);
+        }
+    }
+
+    /**
+     * @return the part of the changes within the bookable window, the same window as the default availability query
+     */
+    static List<AvailabilityChange> withinBookableWindow(List<AvailabilityChange> changes) {
+        LocalDate windowStart = LocalDate.now().plusDays(1);
+        LocalDate windowEnd = LocalDate.now().plusMonths(1);
+        List<AvailabilityChange> clipped = new ArrayList<>(changes.size());
+        for (AvailabilityChange change : changes) {
+            LocalDate start = change.getStartDate().isBefore(windowStart) ? windowStart : change.getStartDate();
+            LocalDate end = change.getEndDate().isAfter(windowEnd) ? windowEnd : change.getEndDate();
+            if (start.isBefore(end)) {
+                clipped.add(new AvailabilityChange(change.getCampsite(), start, end, change.isAvailable()));
+            }
+        }
+        return clipped;
+    }
+
+    private void push(List<AvailabilityChange> changes) {
+        sender.execute(() -> changes.stream()
+                .collect(Collectors.groupingBy(AvailabilityChange::getCampsite))
+                .forEach((campsite, campsiteChanges) -> {
+                    for (SseEmitter emitter : subscribers.getOrDefault(campsite, Set.of())) {
+                        try {
+                            emitter.send(SseEmitter.event().name(CHANGE_EVENT).data(campsiteChanges));
+                        } catch (IOException | IllegalStateException e) {
+                            log.debug("Dropping availability subscriber: {}", e.getMessage());
+                            subscribers.get(campsite).remove(emitter);
+                            emitter.completeWithError(e);
+                        }
+                    }
+                }));
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void stop() {
+        sender.shutdownNow();
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+    }
+}
@@ -0,0 +1,213 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.config.ReplicaRoutingDataSource;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.lock.FencedLock;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.IMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Booked nights of every campsite in a Hazelcast IMap, one entry per campsite and week holding a bit per night.
+ * Nights are claimed and released by {@link EntryProcessor}s running on the member owning the week, so the check of a
+ * week and its update are atomic without any lock and cost a single round trip. A stay over two weeks claims them
+ * one after the other and gives the first one back if the second one is taken.
+ * <p>
+ * The calendar is loaded from the database once for the cluster, by the first node booking after the map was
+ * emptied; the database remains the system of record. The entry processors run on the members, with a Hazelcast
+ * client they must be on the classpath of the members.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "campsite.booking", name = "mode", havingValue = "calendar")
+public class BookingCalendar {
+
+    public static final String MAP_NAME = "campsite-booking-calendar";
+
+    private static final String LOADED_KEY = "#loaded";
+
+    private static final int WEEK = 7;
+
+    private final IMap<String, Integer> weeks;
+
+    private final FencedLock loadLock;
+
+    private final ReservationRepository reservationRepository;
+
+    private volatile boolean loaded;
+
+    public BookingCalendar(ObjectProvider<HazelcastInstance> hazelcastInstance, ReservationRepository reservationRepository) {
+        HazelcastInstance instance = hazelcastInstance.getIfAvailable();
+        if (instance == null) {
+            throw new IllegalStateException("campsite.booking.mode=calendar requires campsite.hazelcast.enabled");
+        }
+        this.weeks = instance.getMap(MAP_NAME);
+        this.loadLock = instance.getCPSubsystem().getLock(MAP_NAME + "-load");
+        this.reservationRepository = reservationRepository;
+    }
+
+    /**
+     * Claims the nights from startDate (inclusive) to endDate (exclusive)
+     * @return false, and nothing is claimed, if one of the nights is already booked
+     */
+    public boolean claim(String campsite, LocalDate startDate, LocalDate endDate) {
+        return claim(campsite, startDate, endDate, null, null);
+    }
+
+    /**
+     * Same as {@link #claim(String, LocalDate, LocalDate)} for a reservation of the campsite moving to new dates,
+     * the nights it holds from ownStartDate to ownEndDate do not count as booked
+     */
+    public boolean claim(String campsite, LocalDate startDate, LocalDate endDate, LocalDate ownStartDate, LocalDate ownEndDate) {
+        ensureLoaded();
+        Map<Long, Integer> nights = nightsByWeek(startDate, endDate);
+        Map<Long, Integer> own = ownStartDate == null ? Map.of() : nightsByWeek(ownStartDate, ownEndDate);
+        List<Map.Entry<Long, Integer>> claimed = new ArrayList<>();
+        for (Map.Entry<Long, Integer> week : nights.entrySet()) {
+            int ownNights = own.getOrDefault(week.getKey(), 0);
+            if (!weeks.executeOnKey(key(campsite, week.getKey()), new ClaimNights(week.getValue(), ownNights))) {
+                claimed.forEach(previous -> weeks.executeOnKey(key(campsite, previous.getKey()),
+                        new ReleaseNights(previous.getValue() & ~own.getOrDefault(previous.getKey(), 0))));
+                return false;
+            }
+            claimed.add(week);
+        }
+        return true;
+    }
+
+    /**
+     * Releases the nights from startDate (inclusive) to endDate (exclusive)
+     */
+    public void release(String campsite, LocalDate startDate, LocalDate endDate) {
+        release(campsite, startDate, endDate, null, null);
+    }
+
+    /**
+     * Same as {@link #release(String, LocalDate, LocalDate)} but keeps the nights from keptStartDate to keptEndDate,
+     * e.g. the nights a modified reservation still holds
+     */
+    public void release(String campsite, LocalDate startDate, LocalDate endDate, LocalDate keptStartDate, LocalDate keptEndDate) {
+        ensureLoaded();
+        Map<Long, Integer> kept = keptStartDate == null ? Map.of() : nightsByWeek(keptStartDate, keptEndDate);
+        nightsByWeek(startDate, endDate).forEach((week, nights) -> {
+            int released = nights & ~kept.getOrDefault(week, 0);
+            if (released != 0) {
+                weeks.executeOnKey(key(campsite, week), new ReleaseNights(released));
+            }
+        });
+    }
+
+    /**
+     * Bookings, modifications and cancellations wait here until the calendar has been loaded by one of the nodes
+     */
+    void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            if (!weeks.containsKey(LOADED_KEY)) {
+                loadLock.lock();
+                try {
+                    if (!weeks.containsKey(LOADED_KEY)) {
+                        load();
+                    }
+                } finally {
+                    loadLock.unlock();
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private void load() {
+        LocalDate origin = LocalDate.now();
+        List<Reservation> reservations = ReplicaRoutingDataSource.onPrimary(
+                () -> reservationRepository.retrieveReservationsDepartingAfter(origin));
+        Map<String, Integer> booked = new TreeMap<>();
+        for (Reservation reservation : reservations) {
+            LocalDate arrivalDate = reservation.getArrivalDate().isBefore(origin) ? origin : reservation.getArrivalDate();
+            nightsByWeek(arrivalDate, reservation.getDepartureDate()).forEach((week, nights) ->
+                    booked.merge(key(reservation.getCampsite().getCode(), week), nights, (first, second) -> first | second));
+        }
+        booked.forEach((key, nights) -> weeks.executeOnKey(key, new ClaimNights(nights, nights)));
+        weeks.put(LOADED_KEY, 0);
+        log.info("Booking calendar loaded with {} reservations from {}", reservations.size(), origin);
+    }
+
+    private static String key(String campsite, long week) {
+        return campsite + ":" + week;
+    }
+
+    /**
+     * @return a bit per night, by week in chronological order
+     */
+    private static Map<Long, Integer> nightsByWeek(LocalDate startDate, LocalDate endDate) {
+        Map<Long, Integer> nights = new TreeMap<>();
+        for (long day = startDate.toEpochDay(); day < endDate.toEpochDay(); day++) {
+            nights.merge(Math.floorDiv(day, WEEK), 1 << Math.floorMod(day, WEEK), (first, second) -> first | second);
+        }
+        return nights;
+    }
+
+    /**
+     * Books the nights of a week unless one of them is booked by someone else than the claimer
+     */
+    static class ClaimNights implements EntryProcessor<String, Integer, Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int nights;
+
+        private final int ownNights;
+
+        ClaimNights(int nights, int ownNights) {
+            this.nights = nights;
+            this.ownNights = ownNights;
+        }
+
+        @Override
+        public Boolean process(Map.Entry<String, Integer> entry) {
+            int booked = entry.getValue() == null ? 0 : entry.getValue();
+            if ((booked & ~ownNights & nights) != 0) {
+                return false;
+            }
+            entry.setValue(booked | nights);
+            return true;
+        }
+    }
+
+    static class ReleaseNights implements EntryProcessor<String, Integer, Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int nights;
+
+        ReleaseNights(int nights) {
+            this.nights = nights;
+        }
+
+        @Override
+        public Void process(Map.Entry<String, Integer> entry) {
+            if (entry.getValue() != null) {
+                int booked = entry.getValue() & ~nights;
+                //an empty week is removed rather than kept at 0
+                entry.setValue(booked == 0 ? null : booked);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.exception.ReservationException;
+import com.campsite.reservation.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies the mutating booking requests one after the other on a single writer thread.
+ * <p>
+ * Request threads enqueue a {@link Command} in a bounded queue and wait for its result. The writer drains
+ * up to campsite.booking.sequencer.max-group-size commands at a time and runs them in one transaction, checking
+ * availability against the {@link OccupancyIndex} plus the nights already claimed or released by the group
+ * ({@link PendingOccupancy}), so no lock is needed and many bookings share one commit.
+ * <p>
+ * A {@link ReservationException} only fails its own command. Any other failure rolls the group back and the
+ * commands of the group are applied again, each in its own transaction.
+ * <p>
+ * A request not applied within campsite.booking.sequencer.result-timeout is answered with a 503 and dropped if the
+ * writer did not reach it yet; one the writer already started is still committed. An error escaping the writer
+ * fails its group and a new writer thread takes over, counted by campsite.booking.sequencer.restarts.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "campsite.booking", name = "mode", havingValue = "sequenced")
+public class BookingSequencer {
+
+    /**
+     * A request applied by the writer thread inside the transaction of its group
+     */
+    @FunctionalInterface
+    interface Command<T> {
+
+        T apply(PendingOccupancy pendingOccupancy);
+    }
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final OccupancyIndex occupancyIndex;
+
+    private final BlockingQueue<Submission<?>> queue;
+
+    private final int maxGroupSize;
+
+    private final Duration submitTimeout;
+
+    private final Duration resultTimeout;
+
+    private final LongAdder restarts = new LongAdder();
+
+    private volatile Thread writer;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    private volatile boolean running;
+
+    private volatile DistributionSummary groupSizes;
+
+    public BookingSequencer(PlatformTransactionManager transactionManager, OccupancyIndex occupancyIndex,
+                            CampsiteProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        CampsiteProperties.Sequencer settings = properties.getBooking().getSequencer();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.occupancyIndex = occupancyIndex;
+        this.queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        this.maxGroupSize = settings.getMaxGroupSize();
+        this.submitTimeout = settings.getSubmitTimeout();
+        this.resultTimeout = settings.getResultTimeout();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Meters are registered here rather than through a MeterBinder, the registry depends on the
+     * repositories which this bean depends on
+     */
+    @PostConstruct
+    public void start() {
+        meterRegistry.ifAvailable(this::registerMeters);
+        running = true;
+        startWriter();
+    }
+
+    /**
+     * Lets the writer finish the current group, requests still queued are rejected
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        List<Submission<?>> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(submission -> submission.future.completeExceptionally(
+                new RejectedExecutionException("Booking sequencer is shutting down")));
+    }
+
+    /**
+     * Enqueues the command and waits until the group it belongs to is committed
+     * @return the result of the command
+     * @throws ServiceUnavailableException if the queue stays full for campsite.booking.sequencer.submit-timeout
+     * or the command is not applied within campsite.booking.sequencer.result-timeout
+     */
+    <T> T submit(Command<T> command) {
+        Submission<T> submission = new Submission<>(command);
+        try {
+            if (!running || !queue.offer(submission, submitTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw ServiceUnavailableException.overloaded("Too many booking requests in progress, please retry");
+            }
+            try {
+                return submission.future.get(resultTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                //dropped unless the writer started it in the meantime, then its outcome is awaited
+                if (submission.abandon()) {
+                    log.warn("Booking request not applied within {}, {} requests queued", resultTimeout, queue.size());
+                    throw ServiceUnavailableException.timeout("Booking request could not be applied in time, please retry");
+                }
+                return submission.future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the booking request to be applied", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getRestartCount() {
+        return restarts.sum();
+    }
+
+    private void registerMeters(MeterRegistry registry) {
+        Gauge.builder("campsite.booking.sequencer.queue", this, BookingSequencer::getQueueSize)
+                .description("Booking requests waiting for the writer")
+                .register(registry);
+        groupSizes = DistributionSummary.builder("campsite.booking.sequencer.group.size")
+                .description("Booking requests committed per transaction")
+                .register(registry);
+        FunctionCounter.builder("campsite.booking.sequencer.restarts", this, BookingSequencer::getRestartCount)
+                .description("Writer threads replaced after an unexpected error")
+                .register(registry);
+    }
+
+    private void startWriter() {
+        Thread thread = new Thread(this::run, "booking-sequencer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    private void run() {
+        List<Submission<?>> group = new ArrayList<>(maxGroupSize);
+        while (running) {
+            try {
+                Submission<?> first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, maxGroupSize - 1);
+                //requests whose caller gave up waiting
+                group.removeIf(submission -> !submission.start());
+                if (!group.isEmpty()) {
+                    applyGroup(group);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected failure of the booking sequencer", e);
+                group.forEach(submission -> submission.future.completeExceptionally(e));
+            } catch (Error e) {
+                group.forEach(submission -> submission.future.completeExceptionally(e));
+                if (running) {
+                    log.error("Booking sequencer writer died, starting a new one", e);
+                    restarts.increment();
+                    startWriter();
+                }
+                throw e;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void applyGroup(List<Submission<?>> group) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                PendingOccupancy pendingOccupancy = new PendingOccupancy(occupancyIndex);
+                group.forEach(submission -> submission.apply(pendingOccupancy));
+            });
+        } catch (RuntimeException e) {
+            if (group.size() == 1) {
+                group.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.warn("Group of {} booking requests rolled back, applying them one by one", group.size(), e);
+            group.forEach(submission -> applyGroup(List.of(submission)));
+            return;
+        }
+        DistributionSummary summary = groupSizes;
+        if (summary != null) {
+            summary.record(group.size());
+        }
+        group.forEach(Submission::complete);
+    }
+
+    private static final class Submission<T> {
+
+        private final Command<T> command;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        /**
+         * Claimed either by the writer before applying the command or by the caller giving up on it
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private T result;
+
+        private ReservationException failure;
+
+        private Submission(Command<T> command) {
+            this.command = command;
+        }
+
+        /**
+         * @return true if the writer may apply the command, false if its caller gave up waiting
+         */
+        private boolean start() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        /**
+         * @return true if the command will not be applied, false if the writer already started it
+         */
+        private boolean abandon() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        private void apply(PendingOccupancy pendingOccupancy) {
+            result = null;
+            failure = null;
+            try {
+                result = command.apply(pendingOccupancy);
+            } catch (ReservationException e) {
+                failure = e;
+            }
+        }
+
+        private void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.exception.AccessDeniedException;
+import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.model.UpdateReservationDTO;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ReservationService} checking and claiming the nights of a stay in the {@link BookingCalendar}, atomically on
+ * the Hazelcast member owning them, before writing to the database. There is neither a lock nor a database read
+ * before a booking; a claim is given back if the write fails, and the nights of a cancelled or moved reservation
+ * are released once the change is committed. Modifications and cancellations lock the row of the reservation, so
+ * that of two concurrent changes of a reservation the second one sees the dates written by the first.
+ */
+@Service
+@ConditionalOnProperty(prefix = "campsite.booking", name = "mode", havingValue = "calendar")
+public class CalendarReservationService extends ReservationServiceImpl {
+
+    @Resource
+    private BookingCalendar bookingCalendar;
+
+    @Resource
+    private CampsiteRegistry campsiteRegistry;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Reservation createReservation(ReservationDTO reservationDTO) throws AccessDeniedException {
+        LocalDate checkInDate = reservationDTO.getCheckInDate();
+        LocalDate checkoutDate = reservationDTO.getCheckoutDate();
+        validateDateRange(checkInDate, checkoutDate);
+        validateStayLength(checkInDate, checkoutDate);
+        String campsite = campsiteRegistry.resolve(reservationDTO.getCampsite());
+        if (!bookingCalendar.claim(campsite, checkInDate, checkoutDate)) {
+            throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+        }
+        try {
+            return transactionTemplate.execute(status -> saveNewReservation(reservationDTO, campsite, resolveUser(reservationDTO)));
+        } catch (RuntimeException e) {
+            bookingCalendar.release(campsite, checkInDate, checkoutDate);
+            throw e;
+        }
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Reservation> createReservations(List<ReservationDTO> reservationDTOs) throws AccessDeniedException {
+        List<ReservationDTO> stays = validateBatch(reservationDTOs);
+        List<ReservationDTO> claimed = new ArrayList<>(stays.size());
+        try {
+            for (ReservationDTO stay : stays) {
+                if (!bookingCalendar.claim(campsiteRegistry.resolve(stay.getCampsite()), stay.getCheckInDate(), stay.getCheckoutDate())) {
+                    throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+                }
+                claimed.add(stay);
+            }
+            return transactionTemplate.execute(status -> saveNewReservations(stays));
+        } catch (RuntimeException e) {
+            claimed.forEach(stay -> bookingCalendar.release(campsiteRegistry.resolve(stay.getCampsite()),
+                    stay.getCheckInDate(), stay.getCheckoutDate()));
+            throw e;
+        }
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Reservation modifyReservation(UpdateReservationDTO updateReservationDTO) throws AccessDeniedException, ObjectNotFoundException {
+        LocalDate checkInDate = updateReservationDTO.getCheckInDate();
+        LocalDate checkoutDate = updateReservationDTO.getCheckoutDate();
+        validateDateRange(checkInDate, checkoutDate);
+        validateStayLength(checkInDate, checkoutDate);
+        Reservation reservation = retrieveReservation(updateReservationDTO.getBookingReferenceId());
+        String previousCampsite = reservation.getCampsite().getCode();
+        LocalDate previousArrivalDate = reservation.getArrivalDate();
+        LocalDate previousDepartureDate = reservation.getDepartureDate();
+        String campsite = resolveCampsite(reservation, updateReservationDTO);
+        //the reservation may move onto some of its own nights, they are neither claimed nor released
+        boolean sameCampsite = campsite.equals(previousCampsite);
+        LocalDate ownArrivalDate = sameCampsite ? previousArrivalDate : null;
+        LocalDate ownDepartureDate = sameCampsite ? previousDepartureDate : null;
+        if (!bookingCalendar.claim(campsite, checkInDate, checkoutDate, ownArrivalDate, ownDepartureDate)) {
+            throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+        }
+        Reservation modified;
+        try {
+            modified = transactionTemplate.execute(status -> {
+                Reservation current = retrieveReservationForUpdate(updateReservationDTO.getBookingReferenceId());
+                //the claim was made for the dates read above, the reservation may have been modified since
+                if (!current.getCampsite().getCode().equals(previousCampsite) || !current.getArrivalDate().equals(previousArrivalDate)
+                        || !current.getDepartureDate().equals(previousDepartureDate)) {
+                    throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+                }
+                saveNewDates(current, campsite, updateReservationDTO);
+                return current;
+            });
+        } catch (RuntimeException e) {
+            bookingCalendar.release(campsite, checkInDate, checkoutDate, ownArrivalDate, ownDepartureDate);
+            throw e;
+        }
+        bookingCalendar.release(previousCampsite, previousArrivalDate, previousDepartureDate,
+                sameCampsite ? checkInDate : null, sameCampsite ? checkoutDate : null);
+        return modified;
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void cancelReservation(String reservationId) throws ObjectNotFoundException {
+        Reservation reservation = transactionTemplate.execute(status -> {
+            Reservation current = retrieveReservationForUpdate(reservationId);
+            deleteReservation(current);
+            return current;
+        });
+        bookingCalendar.release(reservation.getCampsite().getCode(), reservation.getArrivalDate(), reservation.getDepartureDate());
+    }
+}
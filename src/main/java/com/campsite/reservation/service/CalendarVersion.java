@@ -0,0 +1,61 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.event.OccupancyChangedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the calendar of each campsite as served by this node, moved forward once the {@link OccupancyIndex}
+ * of this node applied a booking, modification or cancellation of the campsite, whichever node made it.
+ * Availability answered for a version stays valid until the version moves.
+ * <p>
+ * The versions are local to this node, as the availability they stand for, so they are only comparable together with
+ * the {@link #getNode()} id. Versions start from the clock so that they do not go back to an earlier value after
+ * a restart.
+ */
+@Component
+public class CalendarVersion {
+
+    /**
+     * Tells the versions of this node from those of the other nodes and of its previous runs
+     */
+    private final String node = Long.toString(UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE, 36);
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * @return the id of this node, part of every version it hands out
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * @param campsite the code of the campsite
+     * @return the current version of the calendar of the campsite on this node
+     */
+    public long get(String campsite) {
+        return version(campsite).get();
+    }
+
+    /**
+     * Runs before the other listeners of the change, a response rebuilt because of it must not be tagged with
+     * the previous version
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onOccupancyChanged(OccupancyChangedEvent event) {
+        event.getCampsites().forEach(campsite -> version(campsite).incrementAndGet());
+    }
+
+    private AtomicLong version(String campsite) {
+        return versions.computeIfAbsent(campsite, key -> new AtomicLong(System.currentTimeMillis()));
+    }
+}
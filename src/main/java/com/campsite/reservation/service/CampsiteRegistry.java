@@ -0,0 +1,148 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.repository.CampsiteRepository;
+import com.campsite.reservation.repository.ReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.campsite.reservation.model.Campsite.DEFAULT_CODE;
+
+/**
+ * In-memory directory of the campsites by code, so that requests naming a campsite do not need a lookup.
+ * Campsites are added directly in the database and are picked up on the first request naming them. A code found
+ * missing is not looked up again for a minute, so requests naming unknown campsites do not reload the campsites.
+ * <p>
+ * The campsites handed out are detached instances shared by all requests, they can be set on a reservation
+ * in any transaction and read once the transaction is over.
+ */
+@Slf4j
+@Component
+public class CampsiteRegistry {
+
+    private static final long UNKNOWN_CODE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final int MAX_UNKNOWN_CODES = 1024;
+
+    private final CampsiteRepository campsiteRepository;
+
+    private final ReservationRepository reservationRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Campsites by code, replaced as a whole on refresh
+     */
+    private volatile Map<String, Campsite> campsites = Map.of();
+
+    /**
+     * Time in milliseconds at which a code was found missing
+     */
+    private final Map<String, Long> unknownCodes = new ConcurrentHashMap<>();
+
+    public CampsiteRegistry(CampsiteRepository campsiteRepository, ReservationRepository reservationRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.campsiteRepository = campsiteRepository;
+        this.reservationRepository = reservationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Creates the default campsite if needed and assigns it the reservations made before campsites existed
+     */
+    @PostConstruct
+    public void initialize() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Campsite defaultCampsite = campsiteRepository.findCampsiteByCode(DEFAULT_CODE).orElseGet(() -> {
+                Campsite campsite = new Campsite();
+                campsite.setCode(DEFAULT_CODE);
+                campsite.setName("Default campsite");
+                return campsiteRepository.save(campsite);
+            });
+            int assigned = reservationRepository.assignCampsiteWhereMissing(defaultCampsite);
+            if (assigned > 0) {
+                log.info("Assigned {} reservations to the {} campsite", assigned, DEFAULT_CODE);
+            }
+        });
+        refresh();
+    }
+
+    public void refresh() {
+        unknownCodes.clear();
+        campsites = Collections.unmodifiableMap(campsiteRepository.findAll().stream()
+                .collect(Collectors.toMap(Campsite::getCode, Function.identity(), (first, duplicate) -> first, TreeMap::new)));
+    }
+
+    /**
+     * @return the codes of all the campsites in alphabetical order
+     */
+    public Collection<String> getCodes() {
+        return campsites.keySet();
+    }
+
+    /**
+     * @param code the code of the campsite, the default campsite if null
+     * @return the code of an existing campsite
+     * @throws ObjectNotFoundException if there is no campsite with this code
+     */
+    public String resolve(String code) {
+        if (code == null) {
+            return DEFAULT_CODE;
+        }
+        find(code);
+        return code;
+    }
+
+    /**
+     * @return the shared detached campsite, it must not be modified
+     * @throws ObjectNotFoundException if there is no campsite with this code
+     */
+    public Campsite getReference(String code) {
+        return find(code);
+    }
+
+    private Campsite find(String code) {
+        Campsite campsite = campsites.get(code);
+        if (campsite == null) {
+            campsite = findMissing(code);
+        }
+        if (campsite == null) {
+            throw new ObjectNotFoundException("Unable to find campsite with code: " + code);
+        }
+        return campsite;
+    }
+
+    /**
+     * Reloads the campsites unless the code was found missing less than a minute ago
+     */
+    private synchronized Campsite findMissing(String code) {
+        Campsite campsite = campsites.get(code);
+        Long missingSince = unknownCodes.get(code);
+        long now = System.currentTimeMillis();
+        if (campsite != null || (missingSince != null && now - missingSince < UNKNOWN_CODE_TTL_MILLIS)) {
+            return campsite;
+        }
+        refresh();
+        campsite = campsites.get(code);
+        if (campsite == null) {
+            if (unknownCodes.size() >= MAX_UNKNOWN_CODES) {
+                unknownCodes.clear();
+            }
+            unknownCodes.put(code, now);
+        }
+        return campsite;
+    }
+}
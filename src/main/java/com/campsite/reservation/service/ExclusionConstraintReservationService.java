@@ -0,0 +1,93 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.exception.AccessDeniedException;
+import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.model.UpdateReservationDTO;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * {@link ReservationService} relying on the ex_reservation_campsite_stay exclusion constraint (see db/exclusion-constraint.sql)
+ * to reject overlapping stays of a campsite. Bookings are written without a pre-read or an application lock,
+ * so concurrent bookings only contend in the database for the rows they touch.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "campsite.booking", name = "mode", havingValue = "exclusion-constraint")
+public class ExclusionConstraintReservationService extends ReservationServiceImpl {
+
+    private static final String EXCLUSION_VIOLATION = "23P01";
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    @Resource
+    private CampsiteRegistry campsiteRegistry;
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Reservation createReservation(ReservationDTO reservationDTO) throws AccessDeniedException {
+        validateDateRange(reservationDTO.getCheckInDate(), reservationDTO.getCheckoutDate());
+        validateStayLength(reservationDTO.getCheckInDate(), reservationDTO.getCheckoutDate());
+        try {
+            return saveNewReservation(reservationDTO, campsiteRegistry.resolve(reservationDTO.getCampsite()),
+                    resolveUser(reservationDTO));
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<Reservation> createReservations(List<ReservationDTO> reservationDTOs) throws AccessDeniedException {
+        List<ReservationDTO> stays = validateBatch(reservationDTOs);
+        try {
+            return saveNewReservations(stays);
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Reservation modifyReservation(UpdateReservationDTO updateReservationDTO) throws AccessDeniedException, ObjectNotFoundException {
+        Reservation reservation = retrieveReservation(updateReservationDTO.getBookingReferenceId());
+        validateDateRange(updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate());
+        validateStayLength(updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate());
+        try {
+            saveNewDates(reservation, resolveCampsite(reservation, updateReservationDTO), updateReservationDTO);
+        } catch (DataIntegrityViolationException e) {
+            throw translate(e);
+        }
+        return reservation;
+    }
+
+    /**
+     * Turns a violation of the stay exclusion constraint (or of uk_campsite_arrival_departure) into a reservation conflict
+     */
+    private RuntimeException translate(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (EXCLUSION_VIOLATION.equals(sqlState) || UNIQUE_VIOLATION.equals(sqlState)) {
+                    log.debug("Booking rejected by the database: {}", cause.getMessage());
+                    return AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+                }
+            }
+        }
+        return e;
+    }
+}
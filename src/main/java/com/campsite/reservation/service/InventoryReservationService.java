@@ -0,0 +1,220 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.exception.AccessDeniedException;
+import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.exception.ServiceUnavailableException;
+import com.campsite.reservation.model.DayInventory;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.model.UpdateReservationDTO;
+import com.campsite.reservation.repository.DayInventoryRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+
+/**
+ * {@link ReservationService} claiming the nights of a stay through their {@link DayInventory} rows instead of a lock.
+ * The versions of the nights are incremented on commit, so of two bookings sharing a night only the first one commits;
+ * the other one is attempted again, in a new transaction, and then sees the committed reservation.
+ * Bookings of distinct nights never wait for each other.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "campsite.booking", name = "mode", havingValue = "inventory")
+public class InventoryReservationService extends ReservationServiceImpl {
+
+    private static final String BOOKING_CONTENDED = "Too many bookings for these dates in progress, please retry";
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    @Resource
+    private DayInventoryRepository dayInventoryRepository;
+
+    @Resource
+    private CampsiteRegistry campsiteRegistry;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private CampsiteProperties campsiteProperties;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final LongAdder retryCount = new LongAdder();
+
+    private final LongAdder exhaustedCount = new LongAdder();
+
+    /**
+     * Meters are registered here rather than through a MeterBinder, the registry depends on the
+     * repositories which this bean depends on
+     */
+    @PostConstruct
+    public void registerMeters() {
+        meterRegistry.ifAvailable(registry -> {
+            FunctionCounter.builder("campsite.booking.inventory.retries", retryCount, LongAdder::sum)
+                    .description("Booking attempts started again after another booking claimed one of the nights")
+                    .register(registry);
+            FunctionCounter.builder("campsite.booking.inventory.exhausted", exhaustedCount, LongAdder::sum)
+                    .description("Bookings rejected with a 503 after running out of attempts")
+                    .register(registry);
+        });
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Reservation createReservation(ReservationDTO reservationDTO) throws AccessDeniedException {
+        validateDateRange(reservationDTO.getCheckInDate(), reservationDTO.getCheckoutDate());
+        validateStayLength(reservationDTO.getCheckInDate(), reservationDTO.getCheckoutDate());
+        String campsite = campsiteRegistry.resolve(reservationDTO.getCampsite());
+        return withRetries(() -> transactionTemplate.execute(status -> {
+            claimDays(campsite, reservationDTO.getCheckInDate(), reservationDTO.getCheckoutDate());
+            if (!isAvailableSpotInRepository(campsite, reservationDTO.getCheckInDate(), reservationDTO.getCheckoutDate())) {
+                throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+            }
+            return saveNewReservation(reservationDTO, campsite, resolveUser(reservationDTO));
+        }));
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Reservation> createReservations(List<ReservationDTO> reservationDTOs) throws AccessDeniedException {
+        List<ReservationDTO> stays = validateBatch(reservationDTOs);
+        return withRetries(() -> transactionTemplate.execute(status -> {
+            for (ReservationDTO stay : stays) {
+                String campsite = campsiteRegistry.resolve(stay.getCampsite());
+                claimDays(campsite, stay.getCheckInDate(), stay.getCheckoutDate());
+                if (!isAvailableSpotInRepository(campsite, stay.getCheckInDate(), stay.getCheckoutDate())) {
+                    throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+                }
+            }
+            return saveNewReservations(stays);
+        }));
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Reservation modifyReservation(UpdateReservationDTO updateReservationDTO) throws AccessDeniedException, ObjectNotFoundException {
+        validateDateRange(updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate());
+        validateStayLength(updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate());
+        return withRetries(() -> transactionTemplate.execute(status -> {
+            Reservation reservation = retrieveReservation(updateReservationDTO.getBookingReferenceId());
+            String campsite = resolveCampsite(reservation, updateReservationDTO);
+            claimDays(campsite, updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate());
+            if (!isAvailableSpotInRepository(campsite, updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate())) {
+                throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+            }
+            saveNewDates(reservation, campsite, updateReservationDTO);
+            return reservation;
+        }));
+    }
+
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    public long getExhaustedCount() {
+        return exhaustedCount.sum();
+    }
+
+    /**
+     * Claims the nights of the stay for the current transaction. Nights booked for the first time are inserted,
+     * a concurrent insert of the same night violates uk_campsite_stay_date
+     */
+    private void claimDays(String campsite, LocalDate startDate, LocalDate endDate) {
+        List<DayInventory> days = dayInventoryRepository.claimDays(campsite, startDate, endDate);
+        if (days.size() == DAYS.between(startDate, endDate)) {
+            return;
+        }
+        Set<LocalDate> known = days.stream().map(DayInventory::getStayDate).collect(Collectors.toSet());
+        List<DayInventory> missing = new ArrayList<>();
+        for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
+            if (!known.contains(date)) {
+                DayInventory day = new DayInventory();
+                day.setCampsite(campsiteRegistry.getReference(campsite));
+                day.setStayDate(date);
+                missing.add(day);
+            }
+        }
+        dayInventoryRepository.saveAllAndFlush(missing);
+    }
+
+    /**
+     * Runs the booking until it commits, backing off between the attempts that lost a night to another booking
+     * @throws ServiceUnavailableException once campsite.booking.inventory.max-attempts are exhausted
+     */
+    private <T> T withRetries(Supplier<T> booking) {
+        CampsiteProperties.Inventory settings = campsiteProperties.getBooking().getInventory();
+        long backoff = settings.getInitialBackoff().toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return booking.get();
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                if (attempt >= settings.getMaxAttempts()) {
+                    exhaustedCount.increment();
+                    log.warn("Booking gave up after {} attempts: {}", attempt, e.getMessage());
+                    throw ServiceUnavailableException.overloaded(BOOKING_CONTENDED);
+                }
+                retryCount.increment();
+                log.debug("Booking attempt {} lost a night to another booking: {}", attempt, e.getMessage());
+                pause(ThreadLocalRandom.current().nextLong(backoff + 1));
+                backoff = Math.min(backoff * 2, settings.getMaxBackoff().toMillis());
+            }
+        }
+    }
+
+    private static boolean isRetryable(RuntimeException e) {
+        if (e instanceof ConcurrencyFailureException) {
+            return true;
+        }
+        //of the integrity violations only a night inserted by another booking is worth another attempt
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && UNIQUE_VIOLATION.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void pause(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ServiceUnavailableException.overloaded(BOOKING_CONTENDED);
+        }
+    }
+}
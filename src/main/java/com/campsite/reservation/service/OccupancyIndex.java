@@ -0,0 +1,565 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.config.ReplicaRoutingDataSource;
+import com.campsite.reservation.event.OccupancyChangedEvent;
+import com.campsite.reservation.event.ReservationChangedEvent;
+import com.campsite.reservation.model.AvailabilityChange;
+import com.campsite.reservation.model.AvailableDate;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservedStay;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.topic.ITopic;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory view of the booked nights of every campsite, one bit per night keyed by epoch day.
+ * A reservation from arrival to departure occupies the nights arrival (inclusive) to departure (exclusive).
+ * Each campsite has its own bits and lock, so bookings of different campsites never wait for each other.
+ * <p>
+ * The index is loaded once the application is ready and kept up to date from committed
+ * {@link ReservationChangedEvent}s, so availability can be answered without a database round trip.
+ * Until it is loaded (or for days before its origin) callers should fall back to the repository.
+ * With the {@link ReservationJournal} it is loaded from the latest snapshot and the changes journaled since.
+ * <p>
+ * With Hazelcast the changes are forwarded to the other nodes on the campsite-reservation-changes topic. A node applies
+ * the changes it receives straight away, then reads the booked nights of their campsites again from the primary, as
+ * the changes of different nodes may arrive in another order than they were committed. In write-behind mode the
+ * database lags behind, the changes are only applied, in the order of the topic (globally ordered on the members).
+ * Every change applied, local or received, is published as an {@link OccupancyChangedEvent}.
+ */
+@Slf4j
+@Component
+public class OccupancyIndex {
+
+    public static final String TOPIC_NAME = "campsite-reservation-changes";
+
+    private static final long NOT_LOADED = Long.MIN_VALUE;
+
+    @Resource
+    private ReservationRepository reservationRepository;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectProvider<ReservationJournal> reservationJournal;
+
+    @Autowired
+    private ObjectProvider<HazelcastInstance> hazelcastInstance;
+
+    @Autowired
+    private ObjectProvider<CampsiteProperties> campsiteProperties;
+
+    /**
+     * Tells the changes of this node from those of the other nodes on the topic
+     */
+    private final String node = UUID.randomUUID().toString();
+
+    /**
+     * Null without Hazelcast
+     */
+    private volatile ITopic<RemoteChange> topic;
+
+    private volatile UUID registration;
+
+    /**
+     * Whether the campsites changed on another node are read again from the database
+     */
+    private volatile boolean refreshFromRepository;
+
+    /**
+     * Campsites waiting to be read again
+     */
+    private final Set<String> staleCampsites = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "occupancy-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Booked nights by campsite code, replaced as a whole on load
+     */
+    private volatile Map<String, Nights> campsites = new ConcurrentHashMap<>();
+
+    /**
+     * Changes committed while the index was loading; replayed once the snapshot is in place.
+     * Also guards the loading itself.
+     */
+    private final List<ReservationChangedEvent> pendingEvents = new ArrayList<>();
+
+    /**
+     * Epoch day represented by bit 0
+     */
+    private volatile long originDay = NOT_LOADED;
+
+    @PostConstruct
+    public void subscribe() {
+        HazelcastInstance instance = hazelcastInstance.getIfAvailable();
+        if (instance != null) {
+            CampsiteProperties properties = campsiteProperties.getObject();
+            connect(instance.getTopic(TOPIC_NAME), properties.getBooking().getMode() != CampsiteProperties.Booking.MODE.WRITE_BEHIND);
+        }
+    }
+
+    /**
+     * Forwards the changes of this node to the topic and applies those of the other nodes
+     * @param refreshFromRepository whether the campsites changed on another node are read again from the database
+     */
+    void connect(ITopic<RemoteChange> topic, boolean refreshFromRepository) {
+        this.refreshFromRepository = refreshFromRepository;
+        this.registration = topic.addMessageListener(message -> onRemoteChange(message.getMessageObject()));
+        this.topic = topic;
+    }
+
+    @PreDestroy
+    public void stop() {
+        ITopic<RemoteChange> connected = topic;
+        if (connected != null) {
+            connected.removeMessageListener(registration);
+        }
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Read from the primary, a lagging replica would miss reservations committed before the changes replayed on load.
+     * Runs before the other listeners, the warm-up queries the index
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromRepository() {
+        ReservationJournal journal = reservationJournal.getIfAvailable();
+        if (journal != null && journal.restore(this)) {
+            return;
+        }
+        LocalDate origin = LocalDate.now();
+        List<Reservation> reservations = ReplicaRoutingDataSource.onPrimary(
+                () -> reservationRepository.retrieveReservationsDepartingAfter(origin));
+        load(origin, reservations);
+        log.info("Occupancy index loaded with {} reservations from {}", reservations.size(), origin);
+    }
+
+    /**
+     * Replaces the content of the index with the provided reservations
+     * @param origin the first day tracked by the index, earlier days are never answered from memory
+     * @param reservations the reservations departing after origin, with their campsite
+     */
+    public void load(LocalDate origin, Collection<Reservation> reservations) {
+        long day = origin.toEpochDay();
+        Map<String, Nights> loaded = new ConcurrentHashMap<>();
+        for (Reservation reservation : reservations) {
+            loaded.computeIfAbsent(reservation.getCampsite().getCode(), code -> new Nights())
+                    .occupy(toClippedIndex(day, reservation.getArrivalDate()),
+                            toClippedIndex(day, reservation.getDepartureDate()));
+        }
+        replace(day, loaded, List.of());
+    }
+
+    /**
+     * Replaces the content of the index with the booked nights of a snapshot, then applies the changes made since
+     * @param origin the first day tracked by the index, not before snapshotOrigin
+     * @param snapshotOrigin the day of bit 0 of the snapshot
+     * @param bookedNights the booked nights of the snapshot by campsite code
+     * @param changes the changes made after the snapshot, in the order they were made
+     */
+    public void load(LocalDate origin, LocalDate snapshotOrigin, Map<String, BitSet> bookedNights,
+                     List<ReservationChangedEvent> changes) {
+        int shift = Math.toIntExact(origin.toEpochDay() - snapshotOrigin.toEpochDay());
+        Map<String, Nights> loaded = new ConcurrentHashMap<>();
+        bookedNights.forEach((campsite, nights) ->
+                loaded.put(campsite, new Nights(nights.get(shift, Math.max(shift, nights.length())))));
+        replace(origin.toEpochDay(), loaded, changes);
+    }
+
+    private void replace(long day, Map<String, Nights> loaded, List<ReservationChangedEvent> changes) {
+        synchronized (pendingEvents) {
+            campsites = loaded;
+            originDay = day;
+            changes.forEach(this::apply);
+            pendingEvents.forEach(this::apply);
+            pendingEvents.clear();
+        }
+    }
+
+    /**
+     * @return a copy of the booked nights by campsite code, bit 0 being the origin of the index
+     */
+    public Map<String, BitSet> bookedNights() {
+        Map<String, BitSet> bookedNights = new HashMap<>();
+        campsites.forEach((campsite, nights) -> bookedNights.put(campsite, nights.copy()));
+        return bookedNights;
+    }
+
+    /**
+     * @return true if the index can answer queries starting on startDate
+     */
+    public boolean covers(LocalDate startDate) {
+        long origin = originDay;
+        return origin != NOT_LOADED && startDate.toEpochDay() >= origin;
+    }
+
+    /**
+     * Check that no night of the campsite between startDate (inclusive) and endDate (exclusive) is booked
+     */
+    public boolean isVacant(String campsite, LocalDate startDate, LocalDate endDate) {
+        Nights nights = campsites.get(campsite);
+        return nights == null || nights.isVacant(toIndex(startDate), toIndex(endDate));
+    }
+
+    /**
+     * @param campsites the codes of the campsites to check
+     * @return the campsites, in the order provided, with no night booked between startDate and endDate
+     */
+    public List<String> vacantCampsites(Collection<String> campsites, LocalDate startDate, LocalDate endDate) {
+        int from = toIndex(startDate);
+        int to = toIndex(endDate);
+        Map<String, Nights> booked = this.campsites;
+        List<String> vacant = new ArrayList<>();
+        for (String campsite : campsites) {
+            Nights nights = booked.get(campsite);
+            if (nights == null || nights.isVacant(from, to)) {
+                vacant.add(campsite);
+            }
+        }
+        return vacant;
+    }
+
+    /**
+     * Returns the vacant ranges of the campsite between startDate and endDate
+     * @param campsite the code of the campsite
+     * @param startDate the start of the window
+     * @param endDate the end of the window
+     * @return the list of {@link AvailableDate} in ascending order, clipped to the window
+     */
+    public List<AvailableDate> availableDates(String campsite, LocalDate startDate, LocalDate endDate) {
+        int from = toIndex(startDate);
+        int to = toIndex(endDate);
+        Nights nights = campsites.get(campsite);
+        if (nights == null) {
+            return from < to ? List.of(new AvailableDate(startDate, endDate)) : new ArrayList<>();
+        }
+        List<AvailableDate> availableDates = new ArrayList<>();
+        nights.forEachVacantRange(from, to, (vacant, booked) ->
+                availableDates.add(new AvailableDate(toDate(vacant), toDate(booked))));
+        return availableDates;
+    }
+
+    /**
+     * Runs before the other listeners so that caches evicted after commit are refilled from an up to date index
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (originDay == NOT_LOADED) {
+            synchronized (pendingEvents) {
+                if (originDay == NOT_LOADED) {
+                    pendingEvents.add(event);
+                    return;
+                }
+            }
+        }
+        apply(event);
+    }
+
+    /**
+     * Runs after the other listeners, the caches shared by the nodes are evicted before the other nodes hear of the change
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void forward(ReservationChangedEvent event) {
+        eventPublisher.publishEvent(new OccupancyChangedEvent(campsitesOf(event), changesOf(event)));
+        ITopic<RemoteChange> connected = topic;
+        if (connected == null) {
+            return;
+        }
+        try {
+            connected.publish(new RemoteChange(node, event));
+        } catch (RuntimeException e) {
+            //committed already, the other nodes catch up with the next change of the campsite
+            log.warn("Unable to forward the change of reservation {} to the other nodes", event.getReservationId(), e);
+        }
+    }
+
+    private void onRemoteChange(RemoteChange remoteChange) {
+        if (node.equals(remoteChange.node)) {
+            return;
+        }
+        ReservationChangedEvent event = remoteChange.change;
+        onReservationChanged(event);
+        Set<String> campsites = campsitesOf(event);
+        eventPublisher.publishEvent(new OccupancyChangedEvent(campsites, changesOf(event)));
+        if (refreshFromRepository) {
+            campsites.forEach(this::scheduleRefresh);
+        }
+    }
+
+    private void scheduleRefresh(String campsite) {
+        if (staleCampsites.add(campsite)) {
+            refresher.execute(() -> refresh(campsite));
+        }
+    }
+
+    /**
+     * Replaces the booked nights of the campsite by those read from the primary. Read again if the campsite changed
+     * in the meantime, the nights read could then be older than those applied
+     */
+    private void refresh(String campsite) {
+        staleCampsites.remove(campsite);
+        long origin = originDay;
+        if (origin == NOT_LOADED) {
+            //the load reads them anyway
+            return;
+        }
+        Nights nights = nightsOf(campsite);
+        long modifications = nights.getModifications();
+        List<ReservedStay> stays;
+        try {
+            stays = ReplicaRoutingDataSource.onPrimary(
+                    () -> reservationRepository.retrieveStaysDepartingAfter(campsite, LocalDate.ofEpochDay(origin)));
+        } catch (RuntimeException e) {
+            log.warn("Unable to read the booked nights of campsite {}, they are read again on its next change", campsite, e);
+            return;
+        }
+        BitSet booked = new BitSet();
+        for (ReservedStay stay : stays) {
+            booked.set(toClippedIndex(origin, stay.getArrivalDate()), toClippedIndex(origin, stay.getDepartureDate()));
+        }
+        BitSet[] differences = nights.replace(booked, modifications);
+        if (differences == null) {
+            scheduleRefresh(campsite);
+            return;
+        }
+        List<AvailabilityChange> changes = new ArrayList<>();
+        forEachRange(differences[0], (from, to) -> changes.add(new AvailabilityChange(campsite, toDate(from), toDate(to), true)));
+        forEachRange(differences[1], (from, to) -> changes.add(new AvailabilityChange(campsite, toDate(from), toDate(to), false)));
+        if (!changes.isEmpty()) {
+            log.info("Campsite {} was out of date by {} ranges of nights", campsite, changes.size());
+            eventPublisher.publishEvent(new OccupancyChangedEvent(Set.of(campsite), changes));
+        }
+    }
+
+    private static Set<String> campsitesOf(ReservationChangedEvent event) {
+        Set<String> campsites = new LinkedHashSet<>();
+        if (event.getPreviousCampsite() != null) {
+            campsites.add(event.getPreviousCampsite());
+        }
+        if (event.getCampsite() != null) {
+            campsites.add(event.getCampsite());
+        }
+        return campsites;
+    }
+
+    private static List<AvailabilityChange> changesOf(ReservationChangedEvent event) {
+        List<AvailabilityChange> changes = new ArrayList<>(2);
+        if (event.getPreviousArrivalDate() != null) {
+            changes.add(new AvailabilityChange(event.getPreviousCampsite(), event.getPreviousArrivalDate(),
+                    event.getPreviousDepartureDate(), true));
+        }
+        if (event.getArrivalDate() != null) {
+            changes.add(new AvailabilityChange(event.getCampsite(), event.getArrivalDate(), event.getDepartureDate(), false));
+        }
+        return changes;
+    }
+
+    private static void forEachRange(BitSet bits, IntBinaryConsumer consumer) {
+        int from = bits.nextSetBit(0);
+        while (from >= 0) {
+            int to = bits.nextClearBit(from);
+            consumer.accept(from, to);
+            from = bits.nextSetBit(to);
+        }
+    }
+
+    private void apply(ReservationChangedEvent event) {
+        if (event.getPreviousArrivalDate() != null) {
+            nightsOf(event.getPreviousCampsite()).release(toClippedIndex(originDay, event.getPreviousArrivalDate()),
+                    toClippedIndex(originDay, event.getPreviousDepartureDate()));
+        }
+        if (event.getArrivalDate() != null) {
+            nightsOf(event.getCampsite()).occupy(toClippedIndex(originDay, event.getArrivalDate()),
+                    toClippedIndex(originDay, event.getDepartureDate()));
+        }
+    }
+
+    private Nights nightsOf(String campsite) {
+        return campsites.computeIfAbsent(campsite, code -> new Nights());
+    }
+
+    private static int toClippedIndex(long originDay, LocalDate date) {
+        return Math.max(0, Math.toIntExact(date.toEpochDay() - originDay));
+    }
+
+    private int toIndex(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay() - originDay);
+    }
+
+    private LocalDate toDate(int index) {
+        return LocalDate.ofEpochDay(originDay + index);
+    }
+
+    /**
+     * Booked nights of one campsite
+     */
+    private static final class Nights {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private final BitSet nights;
+
+        /**
+         * Number of changes applied, guarded by the lock
+         */
+        private long modifications;
+
+        private Nights() {
+            this(new BitSet());
+        }
+
+        private Nights(BitSet nights) {
+            this.nights = nights;
+        }
+
+        private BitSet copy() {
+            lock.readLock().lock();
+            try {
+                return (BitSet) nights.clone();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private boolean isVacant(int from, int to) {
+            lock.readLock().lock();
+            try {
+                int nextBooked = nights.nextSetBit(from);
+                return nextBooked < 0 || nextBooked >= to;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void forEachVacantRange(int from, int to, IntBinaryConsumer consumer) {
+            lock.readLock().lock();
+            try {
+                int vacant = nights.nextClearBit(from);
+                while (vacant < to) {
+                    int booked = nights.nextSetBit(vacant);
+                    if (booked < 0 || booked > to) {
+                        booked = to;
+                    }
+                    consumer.accept(vacant, booked);
+                    vacant = nights.nextClearBit(booked);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private long getModifications() {
+            lock.readLock().lock();
+            try {
+                return modifications;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Replaces the booked nights unless they changed since expectedModifications
+         * @return the nights released then the nights booked by the replacement, null if they changed
+         */
+        private BitSet[] replace(BitSet booked, long expectedModifications) {
+            lock.writeLock().lock();
+            try {
+                if (modifications != expectedModifications) {
+                    return null;
+                }
+                BitSet released = (BitSet) nights.clone();
+                released.andNot(booked);
+                BitSet added = (BitSet) booked.clone();
+                added.andNot(nights);
+                nights.clear();
+                nights.or(booked);
+                modifications++;
+                return new BitSet[]{released, added};
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void occupy(int from, int to) {
+            lock.writeLock().lock();
+            try {
+                nights.set(from, to);
+                modifications++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void release(int from, int to) {
+            lock.writeLock().lock();
+            try {
+                nights.clear(from, to);
+                modifications++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface IntBinaryConsumer {
+
+        void accept(int first, int second);
+    }
+
+    /**
+     * A change forwarded to the other nodes, with the node that made it
+     */
+    static final class RemoteChange implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String node;
+
+        private final ReservationChangedEvent change;
+
+        RemoteChange(String node, ReservationChangedEvent change) {
+            this.node = node;
+            this.change = change;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.campsite.reservation.service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Nights claimed and released by the requests of a group that is not committed yet, layered over the
+ * {@link OccupancyIndex} which only reflects committed reservations. Only used by the writer thread.
+ */
+class PendingOccupancy {
+
+    private final OccupancyIndex occupancyIndex;
+
+    /**
+     * Nights by campsite code
+     */
+    private final Map<String, Set<LocalDate>> claimed = new HashMap<>();
+
+    private final Map<String, Set<LocalDate>> released = new HashMap<>();
+
+    PendingOccupancy(OccupancyIndex occupancyIndex) {
+        this.occupancyIndex = occupancyIndex;
+    }
+
+    /**
+     * @see OccupancyIndex#covers(LocalDate)
+     */
+    boolean covers(LocalDate startDate) {
+        return occupancyIndex.covers(startDate);
+    }
+
+    /**
+     * Check that no night of the campsite between startDate (inclusive) and endDate (exclusive) is booked, either
+     * in the index or by the group, taking the nights released by the group into account
+     */
+    boolean isVacant(String campsite, LocalDate startDate, LocalDate endDate) {
+        Set<LocalDate> claimedNights = nights(claimed, campsite);
+        Set<LocalDate> releasedNights = nights(released, campsite);
+        for (LocalDate night = startDate; night.isBefore(endDate); night = night.plusDays(1)) {
+            if (claimedNights.contains(night)) {
+                return false;
+            }
+            if (!releasedNights.contains(night) && !occupancyIndex.isVacant(campsite, night, night.plusDays(1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void claim(String campsite, LocalDate startDate, LocalDate endDate) {
+        Set<LocalDate> claimedNights = nights(claimed, campsite);
+        Set<LocalDate> releasedNights = nights(released, campsite);
+        for (LocalDate night = startDate; night.isBefore(endDate); night = night.plusDays(1)) {
+            if (!releasedNights.remove(night)) {
+                claimedNights.add(night);
+            }
+        }
+    }
+
+    void release(String campsite, LocalDate startDate, LocalDate endDate) {
+        Set<LocalDate> claimedNights = nights(claimed, campsite);
+        Set<LocalDate> releasedNights = nights(released, campsite);
+        for (LocalDate night = startDate; night.isBefore(endDate); night = night.plusDays(1)) {
+            if (!claimedNights.remove(night)) {
+                releasedNights.add(night);
+            }
+        }
+    }
+
+    private static Set<LocalDate> nights(Map<String, Set<LocalDate>> nightsByCampsite, String campsite) {
+        return nightsByCampsite.computeIfAbsent(campsite, code -> new HashSet<>());
+    }
+}
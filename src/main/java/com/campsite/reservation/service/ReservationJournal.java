@@ -0,0 +1,203 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.config.ReplicaRoutingDataSource;
+import com.campsite.reservation.event.ReservationChangedEvent;
+import com.campsite.reservation.model.OccupancySnapshot;
+import com.campsite.reservation.model.ReservationJournalEntry;
+import com.campsite.reservation.repository.OccupancySnapshotRepository;
+import com.campsite.reservation.repository.ReservationJournalRepository;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.lock.FencedLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only journal of the reservation changes, written in the transaction of each change, and snapshots of the
+ * booked nights it is periodically folded into. A starting node loads its {@link OccupancyIndex} from the latest
+ * snapshot and the few entries journaled since rather than from camp_reservation.
+ * <p>
+ * Entries are applied in the order of their ids. A change waits for the changes of the same nights made before it
+ * to commit (under the booking lock or when checking the database), so its entry comes after theirs and applying
+ * entries already reflected in a snapshot leaves the nights as they are. Entries younger than the settle time are
+ * left for the next snapshot, transactions may still be writing entries with lower ids.
+ * <p>
+ * With Hazelcast the nodes take turns under the {@link #SNAPSHOT_LOCK_NAME} CP lock, a node finding it held skips
+ * its turn. Entries are deleted once the snapshot after the one they were folded into is taken, so a node restoring
+ * from the snapshot being replaced still finds the entries after it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "campsite.journal", name = "enabled", havingValue = "true")
+public class ReservationJournal {
+
+    public static final String SNAPSHOT_LOCK_NAME = "campsite-journal-snapshot";
+
+    @Resource
+    private ReservationJournalRepository journalRepository;
+
+    @Resource
+    private OccupancySnapshotRepository snapshotRepository;
+
+    @Resource
+    private ReservationRepository reservationRepository;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private TaskScheduler taskScheduler;
+
+    @Resource
+    private CampsiteProperties campsiteProperties;
+
+    @Autowired
+    private ObjectProvider<HazelcastInstance> hazelcastInstance;
+
+    @PostConstruct
+    public void scheduleSnapshots() {
+        if (!campsiteProperties.getJournal().isTakeSnapshots()) {
+            log.info("Snapshots of the booked nights are taken by another instance");
+            return;
+        }
+        Duration interval = campsiteProperties.getJournal().getSnapshotInterval();
+        taskScheduler.scheduleWithFixedDelay(this::takeSnapshot, Instant.now().plus(interval), interval);
+    }
+
+    /**
+     * Before commit, so that the entry is written if and only if the change is. Changes made without a transaction
+     * (write-behind) are journaled straight away
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        journalRepository.save(ReservationJournalEntry.of(event));
+    }
+
+    /**
+     * Loads the index from the latest snapshot and the entries journaled after it, read from the primary
+     * @return false if no snapshot has been taken yet
+     */
+    public boolean restore(OccupancyIndex occupancyIndex) {
+        Optional<OccupancySnapshot> latest = ReplicaRoutingDataSource.onPrimary(snapshotRepository::findFirstByOrderByLastEntryIdDescIdDesc);
+        if (latest.isEmpty()) {
+            return false;
+        }
+        OccupancySnapshot snapshot = latest.get();
+        List<ReservationJournalEntry> entries = ReplicaRoutingDataSource.onPrimary(
+                () -> journalRepository.retrieveEntriesAfter(snapshot.getLastEntryId()));
+        LocalDate origin = LocalDate.now();
+        occupancyIndex.load(origin.isBefore(snapshot.getOriginDate()) ? snapshot.getOriginDate() : origin,
+                snapshot.getOriginDate(), snapshot.bookedNights(), toEvents(entries));
+        log.info("Occupancy index loaded from the snapshot of {} and {} journal entries", snapshot.getTakenAt(), entries.size());
+        return true;
+    }
+
+    /**
+     * Folds the settled entries journaled since the latest snapshot into a new one, then deletes the older snapshots
+     * and the entries folded into the previous one. The first snapshot is taken from camp_reservation, which reflects
+     * the settled entries
+     * @return the new snapshot, null if nothing changed since the latest one
+     */
+    public OccupancySnapshot snapshot() {
+        LocalDate today = LocalDate.now();
+        OffsetDateTime settled = OffsetDateTime.now().minus(campsiteProperties.getJournal().getSettleTime());
+        return transactionTemplate.execute(status -> {
+            Optional<OccupancySnapshot> latest = snapshotRepository.findFirstByOrderByLastEntryIdDescIdDesc();
+            OccupancyIndex calendar = new OccupancyIndex();
+            long lastEntryId;
+            LocalDate origin;
+            if (latest.isEmpty()) {
+                lastEntryId = lastSettledEntryId(settled);
+                origin = today;
+                calendar.load(origin, reservationRepository.retrieveReservationsDepartingAfter(origin));
+            } else {
+                OccupancySnapshot previous = latest.get();
+                List<ReservationJournalEntry> entries = settledEntries(
+                        journalRepository.retrieveEntriesAfter(previous.getLastEntryId()), settled);
+                origin = today.isBefore(previous.getOriginDate()) ? previous.getOriginDate() : today;
+                if (entries.isEmpty() && origin.equals(previous.getOriginDate())) {
+                    return null;
+                }
+                lastEntryId = lastEntryId(entries, previous.getLastEntryId());
+                calendar.load(origin, previous.getOriginDate(), previous.bookedNights(), toEvents(entries));
+            }
+            OccupancySnapshot snapshot = snapshotRepository.save(OccupancySnapshot.of(origin, lastEntryId, calendar.bookedNights()));
+            snapshotRepository.deleteSnapshotsBefore(snapshot.getId());
+            int deleted = latest.map(previous -> journalRepository.deleteEntriesUpTo(previous.getLastEntryId())).orElse(0);
+            log.info("Snapshot of the booked nights taken up to journal entry {}, {} older entries deleted", lastEntryId, deleted);
+            return snapshot;
+        });
+    }
+
+    /**
+     * Takes a snapshot unless another node is taking one
+     */
+    void takeSnapshot() {
+        HazelcastInstance instance = hazelcastInstance.getIfAvailable();
+        FencedLock lock = instance == null ? null : instance.getCPSubsystem().getLock(SNAPSHOT_LOCK_NAME);
+        try {
+            if (lock != null && !lock.tryLock()) {
+                log.debug("Snapshot of the booked nights taken by another node");
+                return;
+            }
+            try {
+                snapshot();
+            } finally {
+                if (lock != null) {
+                    lock.unlock();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to take a snapshot of the booked nights", e);
+        }
+    }
+
+    /**
+     * Same bound as {@link #settledEntries} without reading the entries: the entry before the first one younger
+     * than settled, or the last one
+     */
+    private long lastSettledEntryId(OffsetDateTime settled) {
+        Long firstUnsettled = journalRepository.retrieveFirstEntryIdSince(settled);
+        if (firstUnsettled != null) {
+            return firstUnsettled - 1;
+        }
+        Long last = journalRepository.retrieveLastEntryId();
+        return last == null ? 0 : last;
+    }
+
+    /**
+     * @return the entries up to the first one younger than settled, the following ones are left for the next
+     * snapshot even if older
+     */
+    private static List<ReservationJournalEntry> settledEntries(List<ReservationJournalEntry> entries, OffsetDateTime settled) {
+        return entries.stream()
+                .takeWhile(entry -> entry.getRecordedAt().isBefore(settled))
+                .collect(Collectors.toList());
+    }
+
+    private static long lastEntryId(List<ReservationJournalEntry> entries, long previousEntryId) {
+        return entries.isEmpty() ? previousEntryId : entries.get(entries.size() - 1).getId();
+    }
+
+    private static List<ReservationChangedEvent> toEvents(List<ReservationJournalEntry> entries) {
+        return entries.stream().map(ReservationJournalEntry::toEvent).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,129 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.config.ReplicaRoutingDataSource;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationRecord;
+import com.campsite.reservation.model.User;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.campsite.reservation.repository.UserRepository;
+import com.hazelcast.map.MapStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.campsite.reservation.model.Reservation.STATUS.ACTIVE;
+
+/**
+ * Writes the reservations of the write-behind booking mode to camp_reservation and user_info, and reads them back
+ * when the map is first used after a restart. Hazelcast calls it from its own threads once the write delay has
+ * passed, with the changes of each reservation coalesced into the latest one.
+ * <p>
+ * Reads go to the primary, a replica may not have the latest batches yet.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "campsite.booking", name = "mode", havingValue = "write-behind")
+public class ReservationMapStore implements MapStore<String, ReservationRecord> {
+
+    public static final String MAP_NAME = "campsite-reservations";
+
+    @Resource
+    private ReservationRepository reservationRepository;
+
+    @Resource
+    private UserRepository userRepository;
+
+    @Resource
+    private CampsiteRegistry campsiteRegistry;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public void store(String reservationId, ReservationRecord reservation) {
+        storeAll(Map.of(reservationId, reservation));
+    }
+
+    /**
+     * Moved reservations are flushed before the new ones are inserted, a new reservation may take the dates another
+     * one of the batch moved away from. Should the batch fail anyway Hazelcast retries it, then stores the
+     * reservations one at a time in the order they were changed
+     */
+    @Override
+    public void storeAll(Map<String, ReservationRecord> reservations) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, Reservation> existing = reservationRepository.findReservationsByReservationIdIn(reservations.keySet())
+                    .stream()
+                    .collect(Collectors.toMap(Reservation::getReservationId, Function.identity()));
+            Map<String, User> users = new HashMap<>();
+            List<Reservation> inserted = new ArrayList<>();
+            for (ReservationRecord record : reservations.values()) {
+                Reservation reservation = existing.get(record.getReservationId());
+                if (reservation == null) {
+                    reservation = new Reservation();
+                    reservation.setReservationId(record.getReservationId());
+                    reservation.setReservationStatus(ACTIVE);
+                    reservation.setUser(users.computeIfAbsent(record.getEmail(),
+                            email -> userRepository.upsertUser(email, record.getFullName())));
+                    inserted.add(reservation);
+                }
+                if (reservation.getCampsite() == null || !record.getCampsite().equals(reservation.getCampsite().getCode())) {
+                    reservation.setCampsite(campsiteRegistry.getReference(record.getCampsite()));
+                }
+                reservation.setArrivalDate(record.getArrivalDate());
+                reservation.setDepartureDate(record.getDepartureDate());
+            }
+            reservationRepository.flush();
+            reservationRepository.saveAll(inserted);
+            reservationRepository.flush();
+        });
+        log.debug("Stored {} reservations", reservations.size());
+    }
+
+    @Override
+    public void delete(String reservationId) {
+        deleteAll(List.of(reservationId));
+    }
+
+    @Override
+    public void deleteAll(Collection<String> reservationIds) {
+        transactionTemplate.executeWithoutResult(status ->
+                reservationRepository.deleteAll(reservationRepository.findReservationsByReservationIdIn(reservationIds)));
+        log.debug("Deleted {} reservations", reservationIds.size());
+    }
+
+    @Override
+    public ReservationRecord load(String reservationId) {
+        return ReplicaRoutingDataSource.onPrimary(() -> reservationRepository.findReservationByReservationId(reservationId))
+                .map(ReservationRecord::of)
+                .orElse(null);
+    }
+
+    @Override
+    public Map<String, ReservationRecord> loadAll(Collection<String> reservationIds) {
+        return ReplicaRoutingDataSource.onPrimary(() -> reservationRepository.findReservationsByReservationIdIn(reservationIds))
+                .stream()
+                .collect(Collectors.toMap(Reservation::getReservationId, ReservationRecord::of));
+    }
+
+    /**
+     * Only the reservations that have not departed yet are loaded up front, they are the only ones a booking can
+     * conflict with. Older reservations are loaded when they are read
+     */
+    @Override
+    public Iterable<String> loadAllKeys() {
+        LocalDate today = LocalDate.now();
+        return ReplicaRoutingDataSource.onPrimary(() -> reservationRepository.retrieveReservationIdsDepartingAfter(today));
+    }
+}
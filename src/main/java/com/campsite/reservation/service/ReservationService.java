@@ -3,6 +3,7 @@ package com.campsite.reservation.service;
 import com.campsite.reservation.exception.AccessDeniedException;
 import com.campsite.reservation.exception.InvalidFieldException;
 import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.exception.ServiceUnavailableException;
 import com.campsite.reservation.model.AvailableDate;
 import com.campsite.reservation.model.Reservation;
 import com.campsite.reservation.model.ReservationDTO;
@@ -15,13 +16,25 @@ public interface ReservationService {
 
     /**
      * Reserves the campsite spot for the User
-     * @param reservationDTO the reservation request to be created
+     * @param reservationDTO the reservation request to be created, on the default campsite unless it names one
      * @return the {@link Reservation} if there's an available spot within the provided time range
      * @throws AccessDeniedException if there's no vacant spot for the provided duration
      * @throws InvalidFieldException if the duration is more than 3 days or
      * reservation starts on current day or earlier than a month
+     * @throws ServiceUnavailableException if too many bookings are in progress to attempt this one
      */
-    Reservation createReservation(ReservationDTO reservationDTO) throws AccessDeniedException, InvalidFieldException;
+    Reservation createReservation(ReservationDTO reservationDTO) throws AccessDeniedException, InvalidFieldException, ServiceUnavailableException;
+
+    /**
+     * Reserves several stays at once, for instance for a group. The stays are checked against each other and
+     * against the existing reservations and are either all booked or none is
+     * @param reservationDTOs the reservation requests to be created
+     * @return the {@link Reservation}s in order of arrival
+     * @throws AccessDeniedException if any of the stays overlaps another one or an existing reservation
+     * @throws InvalidFieldException if any of the stays is invalid, see {@link #createReservation(ReservationDTO)}
+     * @throws ServiceUnavailableException if too many bookings are in progress to attempt these ones
+     */
+    List<Reservation> createReservations(List<ReservationDTO> reservationDTOs) throws AccessDeniedException, InvalidFieldException, ServiceUnavailableException;
 
     /**
      * Cancels a reserved campsite spot for the User
@@ -32,7 +45,7 @@ public interface ReservationService {
 
     /**
      * Retrieves the reservation for the provider ID
-     * @param reservationId the {@link Reservation} to retrieve
+     * @param reservationId the {@link Reservation} to retrieve, a time ordered reference or the UUID of an older reservation
      * @return the reservation for the provider ID
      * @throws ObjectNotFoundException if no reservation can be found for the provided ID
      */
@@ -44,9 +57,10 @@ public interface ReservationService {
      * @return the {@link Reservation} if the operation was successful
      * @throws AccessDeniedException if there's no vacant spot for the provided duration or
      * the booking reference does not belong to the user
-     * @throws ObjectNotFoundException if no record can be found for the provided bookingReferenceId
+     * @throws ObjectNotFoundException if no record can be found for the provided bookingReferenceId or campsite
+     * @throws ServiceUnavailableException if too many bookings are in progress to attempt this modification
      */
-    Reservation modifyReservation(UpdateReservationDTO updateReservationDTO) throws AccessDeniedException, ObjectNotFoundException;
+    Reservation modifyReservation(UpdateReservationDTO updateReservationDTO) throws AccessDeniedException, ObjectNotFoundException, ServiceUnavailableException;
 
     /**
      * Returns a list of {@link AvailableDate} for the campsite. Some constraints in this method are as follows
@@ -68,4 +82,35 @@ public interface ReservationService {
      */
     List<AvailableDate> retrieveAvailableDates(LocalDate startDate, LocalDate endDate) throws InvalidFieldException;
 
+    /**
+     * Same as {@link #retrieveAvailableDates(LocalDate, LocalDate)} for the given campsite
+     * @param campsite the code of the campsite, the default campsite if null
+     * @param startDate the start date to start query from
+     * @param endDate the end date for the query
+     * @return the list of {@link AvailableDate}
+     * @throws InvalidFieldException if the supplied date range is invalid
+     * @throws ObjectNotFoundException if there is no campsite with this code
+     */
+    List<AvailableDate> retrieveAvailableDates(String campsite, LocalDate startDate, LocalDate endDate) throws InvalidFieldException, ObjectNotFoundException;
+
+    /**
+     * Returns an opaque version of the availability of a window, the availability is unchanged as long as
+     * the version is. Answered without reading the reservations
+     * @param campsite the code of the campsite, the default campsite if null
+     * @param startDate the start date of the window, defaulted as in {@link #retrieveAvailableDates(LocalDate, LocalDate)}
+     * @param endDate the end date of the window, defaulted as in {@link #retrieveAvailableDates(LocalDate, LocalDate)}
+     * @return the version
+     * @throws ObjectNotFoundException if there is no campsite with this code
+     */
+    String retrieveAvailabilityVersion(String campsite, LocalDate startDate, LocalDate endDate) throws ObjectNotFoundException;
+
+    /**
+     * Returns the campsites where a stay from startDate to endDate can be booked
+     * @param startDate the arrival date
+     * @param endDate the departure date
+     * @return the codes of the vacant campsites in alphabetical order
+     * @throws InvalidFieldException if a date is missing or the supplied date range is invalid
+     */
+    List<String> retrieveAvailableCampsites(LocalDate startDate, LocalDate endDate) throws InvalidFieldException;
+
 }
@@ -1,30 +1,48 @@
 package com.campsite.reservation.service;
 
+import com.campsite.reservation.event.ReservationChangedEvent;
 import com.campsite.reservation.exception.AccessDeniedException;
 import com.campsite.reservation.exception.InvalidFieldException;
 import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.exception.ServiceUnavailableException;
+import com.campsite.reservation.lock.BookingLock;
+import com.campsite.reservation.lock.BookingLockManager;
 import com.campsite.reservation.model.AvailableDate;
 import com.campsite.reservation.model.Reservation;
 import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.model.ReservedStay;
 import com.campsite.reservation.model.UpdateReservationDTO;
 import com.campsite.reservation.model.User;
+import com.campsite.reservation.reference.BookingReferenceGenerator;
 import com.campsite.reservation.repository.ReservationRepository;
 import com.campsite.reservation.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Resource;
 import java.time.LocalDate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.campsite.reservation.model.Reservation.STATUS.ACTIVE;
 import static java.time.temporal.ChronoUnit.DAYS;
@@ -32,8 +50,13 @@ import static java.time.temporal.ChronoUnit.DAYS;
 @Transactional
 @Slf4j
 @Service
+@ConditionalOnProperty(prefix = "campsite.booking", name = "mode", havingValue = "locking", matchIfMissing = true)
 public class ReservationServiceImpl implements ReservationService {
-    private static final String RESERVATION_DATE_CONFLICT = "Unable to find a spot for the dates provided";
+    protected static final String SERVICE_TIMER = "campsite.reservation.service";
+
+    protected static final String RESERVATION_DATE_CONFLICT = "Unable to find a spot for the dates provided";
+
+    private static final String BOOKING_LOCK_TIMEOUT = "Too many bookings for these dates in progress, please retry";
 
     @Resource
     private  ReservationRepository reservationRepository;
@@ -41,63 +64,258 @@ public class ReservationServiceImpl implements ReservationService {
     @Resource
     private UserRepository userRepository;
 
-    private final Lock lock;
+    @Resource
+    private OccupancyIndex occupancyIndex;
 
-    public ReservationServiceImpl () {
-        lock = new ReentrantLock(true);
-    }
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Resource
+    private BookingLockManager bookingLockManager;
+
+    @Resource
+    private AvailabilityCache availabilityCache;
 
+    @Resource
+    private CampsiteRegistry campsiteRegistry;
+
+    @Resource
+    private BookingReferenceGenerator bookingReferenceGenerator;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private CalendarVersion calendarVersion;
+
+    /**
+     * The booking lock is waited for without a transaction, so that queued bookings do not hold a connection.
+     * Only the check and the write run in a transaction, which is committed before the lock is released
+     */
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Reservation createReservation(ReservationDTO reservationDTO) throws AccessDeniedException {
         validateDateRange(reservationDTO.getCheckInDate(), reservationDTO.getCheckoutDate());
 
-        User user;
-        Reservation reservation = null;
-        Optional<User> userOptional = userRepository.findUserByEmail(reservationDTO.getEmail());
-        if (userOptional.isEmpty()) {
-            user = new User();
-            user.setEmail(reservationDTO.getEmail());
-            user.setFullName(reservationDTO.getFullName());
-        } else {
-            user = userOptional.get();
-        }
-        boolean isLockAcquired = false;
+        String campsite = campsiteRegistry.resolve(reservationDTO.getCampsite());
+        try (BookingLock bookingLock = acquireLock(campsite, reservationDTO.getCheckInDate(), reservationDTO.getCheckoutDate(), 20)) {
+            return transactionTemplate.execute(status -> {
+                //try check one more time, against the database as other nodes may have booked
+                if (!isAvailableSpotInRepository(campsite, reservationDTO.getCheckInDate(), reservationDTO.getCheckoutDate())) {
+                    throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+                }
+                return saveNewReservation(reservationDTO, campsite, resolveUser(reservationDTO));
+            });
+        }
+    }
+
+    /**
+     * @return the booking lock of the campsite for the dates
+     * @throws ServiceUnavailableException if it is not acquired within the timeout
+     */
+    protected BookingLock acquireLock(String campsite, LocalDate startDate, LocalDate endDate, long timeoutSeconds) {
         try {
-            isLockAcquired = lock.tryLock(20, TimeUnit.SECONDS);
+            BookingLock bookingLock = bookingLockManager.tryLock(campsite, startDate, endDate, timeoutSeconds, TimeUnit.SECONDS);
+            if (bookingLock != null) {
+                return bookingLock;
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-        if (isLockAcquired) {
-            try {
-                //try check one more time
-                if (!isAvailableSpot(reservationDTO.getCheckInDate(), reservationDTO.getCheckoutDate())) {
-                    throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+        throw ServiceUnavailableException.lockTimeout(BOOKING_LOCK_TIMEOUT);
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Reservation> createReservations(List<ReservationDTO> reservationDTOs) throws AccessDeniedException {
+        List<ReservationDTO> stays = validateBatch(reservationDTOs);
+        LocalDate startDate = stays.stream().map(ReservationDTO::getCheckInDate).min(Comparator.naturalOrder()).get();
+        LocalDate endDate = stays.stream().map(ReservationDTO::getCheckoutDate).max(Comparator.naturalOrder()).get();
+
+        Deque<BookingLock> bookingLocks = new ArrayDeque<>();
+        try {
+            acquireLocks(stays, bookingLocks);
+            return transactionTemplate.execute(status -> {
+                //a single read for the whole batch instead of one availability check per stay
+                List<Reservation> booked = reservationRepository.retrieveReservationsOverlapping(startDate, endDate);
+                for (ReservationDTO stay : stays) {
+                    String campsite = campsiteRegistry.resolve(stay.getCampsite());
+                    for (Reservation reservation : booked) {
+                        if (campsite.equals(reservation.getCampsite().getCode())
+                                && overlaps(stay.getCheckInDate(), stay.getCheckoutDate(), reservation.getArrivalDate(), reservation.getDepartureDate())) {
+                            throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+                        }
+                    }
                 }
-                reservation = new Reservation();
-                reservation.setReservationId(UUID.randomUUID().toString());
-                reservation.setArrivalDate(reservationDTO.getCheckInDate());
-                reservation.setDepartureDate(reservationDTO.getCheckoutDate());
-                reservation.setReservationStatus(ACTIVE);
-                user.getReservations().add(reservation);
-                reservation.setUser(user);
-                userRepository.saveAndFlush(user);
-            } finally {
-                lock.unlock();
+                return saveNewReservations(stays);
+            });
+        } finally {
+            releaseLocks(bookingLocks);
+        }
+    }
+
+    /**
+     * Acquires the booking locks of the campsites of a batch, from the first arrival to the last departure of each
+     * campsite. Campsites are locked in the order of their codes so that overlapping batches cannot deadlock
+     * @param stays the stays of the batch in order of arrival
+     * @param bookingLocks receives the locks as they are acquired, to be released by the caller even on failure
+     */
+    protected void acquireLocks(List<ReservationDTO> stays, Deque<BookingLock> bookingLocks) {
+        Map<String, List<ReservationDTO>> staysByCampsite = stays.stream()
+                .collect(Collectors.groupingBy(stay -> campsiteRegistry.resolve(stay.getCampsite()), TreeMap::new, Collectors.toList()));
+        for (Map.Entry<String, List<ReservationDTO>> campsiteStays : staysByCampsite.entrySet()) {
+            List<ReservationDTO> siteStays = campsiteStays.getValue();
+            bookingLocks.push(acquireLock(campsiteStays.getKey(), siteStays.get(0).getCheckInDate(),
+                    siteStays.get(siteStays.size() - 1).getCheckoutDate(), 20));
+        }
+    }
+
+    protected static void releaseLocks(Deque<BookingLock> bookingLocks) {
+        while (!bookingLocks.isEmpty()) {
+            bookingLocks.pop().close();
+        }
+    }
+
+    /**
+     * Resolves the user making the reservation, first time campers are inserted on the way
+     */
+    protected User resolveUser(ReservationDTO reservationDTO) {
+        return userRepository.upsertUser(reservationDTO.getEmail(), reservationDTO.getFullName());
+    }
+
+    /**
+     * Persists a new active reservation of the campsite for the user, availability must have been checked by the caller.
+     * The reservation is saved on its own, the reservations of the user are not loaded
+     */
+    protected Reservation saveNewReservation(ReservationDTO reservationDTO, String campsite, User user) {
+        Reservation reservation = newReservation(reservationDTO, campsite, user);
+        reservationRepository.saveAndFlush(reservation);
+        publishCreated(reservation, campsite);
+        return reservation;
+    }
+
+    /**
+     * Validates every stay of a batch on its own and against the other stays of the same campsite in the batch
+     * @return the stays in order of arrival
+     */
+    protected List<ReservationDTO> validateBatch(List<ReservationDTO> reservationDTOs) {
+        if (reservationDTOs == null || reservationDTOs.isEmpty()) {
+            throw new InvalidFieldException("At least one reservation is required");
+        }
+        List<ReservationDTO> stays = new ArrayList<>(reservationDTOs);
+        for (ReservationDTO stay : stays) {
+            validateDateRange(stay.getCheckInDate(), stay.getCheckoutDate());
+            validateStayLength(stay.getCheckInDate(), stay.getCheckoutDate());
+        }
+        stays.sort(Comparator.comparing(ReservationDTO::getCheckInDate));
+        Map<String, LocalDate> lastCheckoutDates = new HashMap<>();
+        for (ReservationDTO stay : stays) {
+            LocalDate lastCheckoutDate = lastCheckoutDates.put(campsiteRegistry.resolve(stay.getCampsite()), stay.getCheckoutDate());
+            if (lastCheckoutDate != null && stay.getCheckInDate().isBefore(lastCheckoutDate)) {
+                throw AccessDeniedException.reservationConflict("Reservations in the batch overlap each other");
             }
         }
+        return stays;
+    }
+
+    /**
+     * Persists the stays of a batch in a single flush, availability must have been checked by the caller.
+     * Known users are looked up with one query, new ones are upserted and, as ids come from a sequence,
+     * the reservations are inserted as JDBC batches
+     */
+    protected List<Reservation> saveNewReservations(List<ReservationDTO> stays) {
+        List<String> emails = stays.stream().map(ReservationDTO::getEmail).distinct().collect(Collectors.toList());
+        Map<String, User> users = userRepository.findUsersByEmailIn(emails).stream()
+                .collect(Collectors.toMap(User::getEmail, Function.identity(), (first, duplicate) -> first, HashMap::new));
+        List<Reservation> reservations = new ArrayList<>(stays.size());
+        List<String> campsites = new ArrayList<>(stays.size());
+        for (ReservationDTO stay : stays) {
+            User user = users.computeIfAbsent(stay.getEmail(), email -> resolveUser(stay));
+            String campsite = campsiteRegistry.resolve(stay.getCampsite());
+            campsites.add(campsite);
+            reservations.add(newReservation(stay, campsite, user));
+        }
+        reservationRepository.saveAll(reservations);
+        reservationRepository.flush();
+        for (int i = 0; i < reservations.size(); i++) {
+            publishCreated(reservations.get(i), campsites.get(i));
+        }
+        return reservations;
+    }
+
+    private Reservation newReservation(ReservationDTO reservationDTO, String campsite, User user) {
+        Reservation reservation = new Reservation();
+        reservation.setReservationId(bookingReferenceGenerator.next());
+        reservation.setCampsite(campsiteRegistry.getReference(campsite));
+        reservation.setArrivalDate(reservationDTO.getCheckInDate());
+        reservation.setDepartureDate(reservationDTO.getCheckoutDate());
+        reservation.setReservationStatus(ACTIVE);
+        reservation.setUser(user);
         return reservation;
     }
 
+    private void publishCreated(Reservation reservation, String campsite) {
+        eventPublisher.publishEvent(ReservationChangedEvent.created(reservation.getReservationId(), campsite,
+                reservation.getArrivalDate(), reservation.getDepartureDate()));
+    }
+
+    private static boolean overlaps(LocalDate startDate, LocalDate endDate, LocalDate otherStartDate, LocalDate otherEndDate) {
+        return startDate.isBefore(otherEndDate) && otherStartDate.isBefore(endDate);
+    }
+
+    /**
+     * @return the campsite the reservation moves to, its current campsite unless the update names another one
+     */
+    protected String resolveCampsite(Reservation reservation, UpdateReservationDTO updateReservationDTO) {
+        if (updateReservationDTO.getCampsite() == null) {
+            return reservation.getCampsite().getCode();
+        }
+        return campsiteRegistry.resolve(updateReservationDTO.getCampsite());
+    }
+
+    /**
+     * Moves the reservation to the requested campsite and dates, availability must have been checked by the caller
+     */
+    protected void saveNewDates(Reservation reservation, String campsite, UpdateReservationDTO updateReservationDTO) {
+        log.info("Updating the arrival date from {} to {} and checkout date from {} to {} ",
+                reservation.getArrivalDate(), updateReservationDTO.getCheckInDate(),
+                reservation.getDepartureDate(), updateReservationDTO.getCheckoutDate());
+        String previousCampsite = reservation.getCampsite().getCode();
+        LocalDate previousArrivalDate = reservation.getArrivalDate();
+        LocalDate previousDepartureDate = reservation.getDepartureDate();
+        if (!campsite.equals(previousCampsite)) {
+            reservation.setCampsite(campsiteRegistry.getReference(campsite));
+        }
+        reservation.setArrivalDate(updateReservationDTO.getCheckInDate());
+        reservation.setDepartureDate(updateReservationDTO.getCheckoutDate());
+        reservationRepository.saveAndFlush(reservation);
+        eventPublisher.publishEvent(ReservationChangedEvent.modified(reservation.getReservationId(),
+                previousCampsite, previousArrivalDate, previousDepartureDate,
+                campsite, reservation.getArrivalDate(), reservation.getDepartureDate()));
+    }
+
     @Override
+    @Timed(SERVICE_TIMER)
     @Transactional(isolation = Isolation.READ_COMMITTED)
     public void cancelReservation(String reservationId) throws ObjectNotFoundException {
-        Reservation reservation = retrieveReservation(reservationId);
+        deleteReservation(retrieveReservation(reservationId));
+    }
+
+    protected void deleteReservation(Reservation reservation) {
         //we can safely delete
-        log.info("Deleting reservation {}", reservationId);
+        log.info("Deleting reservation {}", reservation.getReservationId());
+        if (Hibernate.isInitialized(reservation.getUser().getReservations())) {
+            //otherwise the cascade from the user persists the reservation again on flush
+            reservation.getUser().getReservations().remove(reservation);
+        }
         reservationRepository.delete(reservation);
+        eventPublisher.publishEvent(ReservationChangedEvent.cancelled(reservation.getReservationId(),
+                reservation.getCampsite().getCode(), reservation.getArrivalDate(), reservation.getDepartureDate()));
     }
 
+    @Timed(SERVICE_TIMER)
     public Reservation retrieveReservation(String reservationId) {
         Optional<Reservation> reservation = reservationRepository.findReservationByReservationId(reservationId);
         if (reservation.isEmpty()) {
@@ -106,51 +324,126 @@ public class ReservationServiceImpl implements ReservationService {
         return reservation.get();
     }
 
+    /**
+     * Reads the reservation locking its row until the transaction ends, for changes checked against what was read
+     * before the transaction
+     */
+    protected Reservation retrieveReservationForUpdate(String reservationId) {
+        Optional<Reservation> reservation = reservationRepository.findReservationForUpdate(reservationId);
+        if (reservation.isEmpty()) {
+            throw new ObjectNotFoundException("Unable to find reservation with ID: " + reservationId);
+        }
+        //needed to answer and to publish the change, after the transaction
+        Hibernate.initialize(reservation.get().getUser());
+        Hibernate.initialize(reservation.get().getCampsite());
+        return reservation.get();
+    }
+
+    /**
+     * As for {@link #createReservation(ReservationDTO)} the booking lock is waited for outside of the transaction,
+     * the reservation is read again once the lock is held
+     */
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Reservation modifyReservation(UpdateReservationDTO updateReservationDTO) throws AccessDeniedException, ObjectNotFoundException {
         Reservation reservation = retrieveReservation(updateReservationDTO.getBookingReferenceId());
         validateDateRange(updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate());
-        if (!isAvailableSpot(updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate())) {
+        String campsite = resolveCampsite(reservation, updateReservationDTO);
+        if (!isAvailableSpot(campsite, updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate())) {
             throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
         }
 
-        boolean isLockAcquired=false;
-        try {
-            isLockAcquired = lock.tryLock(3, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        if (isLockAcquired) {
-            try {
-                //try check one more time
-                if (!isAvailableSpot(updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate())) {
+        try (BookingLock bookingLock = acquireLock(campsite, updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate(), 3)) {
+            return transactionTemplate.execute(status -> {
+                Reservation current = retrieveReservation(updateReservationDTO.getBookingReferenceId());
+                //the reservation may have been moved to another campsite while waiting for the lock
+                if (!campsite.equals(resolveCampsite(current, updateReservationDTO))) {
                     throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
                 }
-                log.info("Updating the arrival date from {} to {} and checkout date from {} to {} ",
-                        reservation.getArrivalDate(), updateReservationDTO.getCheckInDate(),
-                        reservation.getDepartureDate(), updateReservationDTO.getCheckoutDate());
-                reservation.setArrivalDate(updateReservationDTO.getCheckInDate());
-                reservation.setDepartureDate(updateReservationDTO.getCheckoutDate());
-                reservationRepository.saveAndFlush(reservation);
-            } finally {
-                lock.unlock();
-            }
+                //try check one more time, against the database as other nodes may have booked
+                if (!isAvailableSpotInRepository(campsite, updateReservationDTO.getCheckInDate(), updateReservationDTO.getCheckoutDate())) {
+                    throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+                }
+                saveNewDates(current, campsite, updateReservationDTO);
+                return current;
+            });
         }
-        return reservation;
     }
 
+    /**
+     * Served from the {@link AvailabilityCache} when enabled, otherwise from the {@link OccupancyIndex} once it is loaded,
+     * hence no transaction is started here
+     */
     @Override
-    @Transactional(readOnly = true)
+    @Timed(SERVICE_TIMER)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<AvailableDate> retrieveAvailableDates(LocalDate preferredStartDate, LocalDate preferredEndDate) {
-        if (preferredStartDate == null) {
-            preferredStartDate = LocalDate.now().plusDays(1);
+        return retrieveAvailableDates(null, preferredStartDate, preferredEndDate);
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<AvailableDate> retrieveAvailableDates(String campsite, LocalDate preferredStartDate, LocalDate preferredEndDate) {
+        String campsiteCode = campsiteRegistry.resolve(campsite);
+        preferredStartDate = defaultStartDate(preferredStartDate);
+        preferredEndDate = defaultEndDate(preferredEndDate);
+        validateDateRange(preferredStartDate, preferredEndDate);
+        if (availabilityCache.isEnabled()) {
+            //shared by the nodes, so loaded from the database rather than from the index of this node
+            return availabilityCache.get(campsiteCode, preferredStartDate, preferredEndDate,
+                    (startDate, endDate) -> retrieveAvailableDatesFromRepository(campsiteCode, startDate, endDate));
+        }
+        return computeAvailableDates(campsiteCode, preferredStartDate, preferredEndDate);
+    }
+
+    /**
+     * Made of the node and {@link CalendarVersion} of the campsite and of the window once defaulted, as the default
+     * window moves every day
+     */
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public String retrieveAvailabilityVersion(String campsite, LocalDate startDate, LocalDate endDate) {
+        String campsiteCode = campsiteRegistry.resolve(campsite);
+        return calendarVersion.getNode() + "-" + calendarVersion.get(campsiteCode) + "-" + defaultStartDate(startDate).toEpochDay()
+                + "-" + defaultEndDate(endDate).toEpochDay();
+    }
+
+    private static LocalDate defaultStartDate(LocalDate startDate) {
+        return startDate == null ? LocalDate.now().plusDays(1) : startDate;
+    }
+
+    private static LocalDate defaultEndDate(LocalDate endDate) {
+        return endDate == null ? LocalDate.now().plusMonths(1) : endDate;
+    }
+
+    /**
+     * Answered from the {@link OccupancyIndex} with one bit lookup per campsite when it covers the dates,
+     * otherwise with a single query for the campsites booked during the stay
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<String> retrieveAvailableCampsites(LocalDate startDate, LocalDate endDate) {
+        validateDateRange(startDate, endDate);
+        if (occupancyIndex.covers(startDate)) {
+            return occupancyIndex.vacantCampsites(campsiteRegistry.getCodes(), startDate, endDate);
         }
+        Set<String> booked = new HashSet<>(reservationRepository.retrieveBookedCampsites(startDate, endDate));
+        return campsiteRegistry.getCodes().stream()
+                .filter(campsite -> !booked.contains(campsite))
+                .collect(Collectors.toList());
+    }
 
-        if (preferredEndDate == null) {
-            preferredEndDate = LocalDate.now().plusMonths(1);
+    private List<AvailableDate> computeAvailableDates(String campsite, LocalDate preferredStartDate, LocalDate preferredEndDate) {
+        if (occupancyIndex.covers(preferredStartDate)) {
+            return occupancyIndex.availableDates(campsite, preferredStartDate, preferredEndDate);
         }
-        validateDateRange(preferredStartDate, preferredEndDate);
+        return retrieveAvailableDatesFromRepository(campsite, preferredStartDate, preferredEndDate);
+    }
+
+    private List<AvailableDate> retrieveAvailableDatesFromRepository(String campsite, LocalDate preferredStartDate, LocalDate preferredEndDate) {
         List<AvailableDate> availableDates = new ArrayList<>();
         List<AvailableDate> requestedAvailableDates = new ArrayList<>();
 
@@ -158,7 +451,11 @@ public class ReservationServiceImpl implements ReservationService {
 
         long temp = 30 - DAYS.between(LocalDate.now(), preferredStartDate);
         LocalDate forwardLookingEnd = preferredStartDate.plusDays(temp);
-        List<Reservation> result = reservationRepository.retrieveReservationForDates(preferredStartDate.minusDays(30 - temp), forwardLookingEnd);
+        //a stay arriving up to a month away departs after the look ahead, it must still see the stays it overlaps
+        if (forwardLookingEnd.isBefore(preferredEndDate)) {
+            forwardLookingEnd = preferredEndDate;
+        }
+        List<ReservedStay> result = reservationRepository.retrieveStaysForDates(campsite, preferredStartDate.minusDays(30 - temp), forwardLookingEnd);
 
         if (result.isEmpty()) {
             availableDates.add(new AvailableDate(preferredStartDate, preferredEndDate));
@@ -191,18 +488,28 @@ public class ReservationServiceImpl implements ReservationService {
     }
 
     /**
-     * Check if provided date range to be reserved is available
+     * Check if provided date range to be reserved is available on the campsite
+     * @param campsite the code of the campsite
      * @param startDate actual start date for the reservation
      * @param endDate actual end date for the reservation
      * @return true if the date range is available otherwise returns false
      */
     @Transactional(readOnly = true)
-    boolean isAvailableSpot(final LocalDate startDate, final LocalDate endDate) {
-        long days = DAYS.between(startDate, endDate);
-        if (days > 3) {
-            throw new InvalidFieldException("Reservation can be done for maximum of 3 days");
+    boolean isAvailableSpot(final String campsite, final LocalDate startDate, final LocalDate endDate) {
+        validateStayLength(startDate, endDate);
+        if (occupancyIndex.covers(startDate)) {
+            return occupancyIndex.isVacant(campsite, startDate, endDate);
         }
-        List<AvailableDate> availableDates = retrieveAvailableDates(startDate, endDate);
+        return isAvailableSpotInRepository(campsite, startDate, endDate);
+    }
+
+    /**
+     * Same as {@link #isAvailableSpot(String, LocalDate, LocalDate)} but always reads the reservations from the database
+     */
+    protected boolean isAvailableSpotInRepository(final String campsite, final LocalDate startDate, final LocalDate endDate) {
+        validateStayLength(startDate, endDate);
+        validateDateRange(startDate, endDate);
+        List<AvailableDate> availableDates = retrieveAvailableDatesFromRepository(campsite, startDate, endDate);
         for (AvailableDate availableDate : availableDates) {
             LocalDate availableEndDate = availableDate.getEndDate();
             LocalDate availableStartDate = availableDate.getStartDate();
@@ -214,13 +521,21 @@ public class ReservationServiceImpl implements ReservationService {
                 return true;
             }
 
-            if (startDate.isBefore(availableEndDate) && (endDate.isBefore(availableEndDate) || endDate.isEqual(availableEndDate))) {
+            if (!startDate.isBefore(availableStartDate) && startDate.isBefore(availableEndDate)
+                    && (endDate.isBefore(availableEndDate) || endDate.isEqual(availableEndDate))) {
                 return true;
             }
         }
         return false;
     }
 
+    protected void validateStayLength(LocalDate startDate, LocalDate endDate) {
+        long days = DAYS.between(startDate, endDate);
+        if (days > 3) {
+            throw new InvalidFieldException("Reservation can be done for maximum of 3 days");
+        }
+    }
+
     /**
      * Validates the date range to ensure checkInDate is T+1 and checkoutDate not over a month
      * ALso validates that a maximum of 3 days can be booked
@@ -228,7 +543,10 @@ public class ReservationServiceImpl implements ReservationService {
      * @param checkInDate  the date of arrival
      * @param checkoutDate the date of departure
      */
-    private void validateDateRange(LocalDate checkInDate, LocalDate checkoutDate) {
+    protected void validateDateRange(LocalDate checkInDate, LocalDate checkoutDate) {
+        if (checkInDate == null || checkoutDate == null) {
+            throw new InvalidFieldException("Start date and end date are required");
+        }
         if (checkInDate.isAfter(checkoutDate)) {
             throw new InvalidFieldException("Check in date cannot be after checkout date!");
         }
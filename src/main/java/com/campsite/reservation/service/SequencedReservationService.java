@@ -0,0 +1,123 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.exception.AccessDeniedException;
+import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.model.UpdateReservationDTO;
+import com.campsite.reservation.repository.ReservationRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * {@link ReservationService} handing every booking, modification and cancellation to the {@link BookingSequencer}.
+ * Request threads only validate the input and wait, they neither hold a lock nor a database connection;
+ * availability is checked by the writer thread against the occupancy of the campsite.
+ * <p>
+ * As the occupancy index is local to the JVM this mode is only safe with a single application instance.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "campsite.booking", name = "mode", havingValue = "sequenced")
+public class SequencedReservationService extends ReservationServiceImpl {
+
+    @Resource
+    private BookingSequencer bookingSequencer;
+
+    @Resource
+    private ReservationRepository reservationRepository;
+
+    @Resource
+    private CampsiteRegistry campsiteRegistry;
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Reservation createReservation(ReservationDTO reservationDTO) throws AccessDeniedException {
+        LocalDate checkInDate = reservationDTO.getCheckInDate();
+        LocalDate checkoutDate = reservationDTO.getCheckoutDate();
+        validateDateRange(checkInDate, checkoutDate);
+        validateStayLength(checkInDate, checkoutDate);
+        String campsite = campsiteRegistry.resolve(reservationDTO.getCampsite());
+        return bookingSequencer.submit(pendingOccupancy -> {
+            if (!isVacant(pendingOccupancy, campsite, checkInDate, checkoutDate)) {
+                throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+            }
+            pendingOccupancy.claim(campsite, checkInDate, checkoutDate);
+            return saveNewReservation(reservationDTO, campsite, resolveUser(reservationDTO));
+        });
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Reservation> createReservations(List<ReservationDTO> reservationDTOs) throws AccessDeniedException {
+        List<ReservationDTO> stays = validateBatch(reservationDTOs);
+        return bookingSequencer.submit(pendingOccupancy -> {
+            for (ReservationDTO stay : stays) {
+                if (!isVacant(pendingOccupancy, campsiteRegistry.resolve(stay.getCampsite()), stay.getCheckInDate(), stay.getCheckoutDate())) {
+                    throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+                }
+            }
+            stays.forEach(stay -> pendingOccupancy.claim(campsiteRegistry.resolve(stay.getCampsite()),
+                    stay.getCheckInDate(), stay.getCheckoutDate()));
+            return saveNewReservations(stays);
+        });
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Reservation modifyReservation(UpdateReservationDTO updateReservationDTO) throws AccessDeniedException, ObjectNotFoundException {
+        LocalDate checkInDate = updateReservationDTO.getCheckInDate();
+        LocalDate checkoutDate = updateReservationDTO.getCheckoutDate();
+        validateDateRange(checkInDate, checkoutDate);
+        validateStayLength(checkInDate, checkoutDate);
+        return bookingSequencer.submit(pendingOccupancy -> {
+            Reservation reservation = retrieveReservation(updateReservationDTO.getBookingReferenceId());
+            String previousCampsite = reservation.getCampsite().getCode();
+            String campsite = resolveCampsite(reservation, updateReservationDTO);
+            //the reservation may move onto some of its own nights
+            pendingOccupancy.release(previousCampsite, reservation.getArrivalDate(), reservation.getDepartureDate());
+            if (!isVacant(pendingOccupancy, campsite, checkInDate, checkoutDate)) {
+                pendingOccupancy.claim(previousCampsite, reservation.getArrivalDate(), reservation.getDepartureDate());
+                throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+            }
+            pendingOccupancy.claim(campsite, checkInDate, checkoutDate);
+            saveNewDates(reservation, campsite, updateReservationDTO);
+            return reservation;
+        });
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void cancelReservation(String reservationId) throws ObjectNotFoundException {
+        bookingSequencer.submit(pendingOccupancy -> {
+            Reservation reservation = retrieveReservation(reservationId);
+            deleteReservation(reservation);
+            //Hibernate flushes inserts before deletes, a later booking of the group could otherwise hit uk_campsite_arrival_departure
+            reservationRepository.flush();
+            pendingOccupancy.release(reservation.getCampsite().getCode(), reservation.getArrivalDate(), reservation.getDepartureDate());
+            return null;
+        });
+    }
+
+    /**
+     * Until the occupancy index is loaded the database is read, it sees the writes of the group flushed so far
+     */
+    private boolean isVacant(PendingOccupancy pendingOccupancy, String campsite, LocalDate startDate, LocalDate endDate) {
+        if (pendingOccupancy.covers(startDate)) {
+            return pendingOccupancy.isVacant(campsite, startDate, endDate);
+        }
+        return isAvailableSpotInRepository(campsite, startDate, endDate);
+    }
+}
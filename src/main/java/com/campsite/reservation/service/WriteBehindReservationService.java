@@ -0,0 +1,243 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.event.ReservationChangedEvent;
+import com.campsite.reservation.exception.AccessDeniedException;
+import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.lock.BookingLock;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.model.ReservationRecord;
+import com.campsite.reservation.model.UpdateReservationDTO;
+import com.campsite.reservation.model.User;
+import com.campsite.reservation.reference.BookingReferenceGenerator;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.campsite.reservation.model.Reservation.STATUS.ACTIVE;
+
+/**
+ * {@link ReservationService} keeping the reservations in a Hazelcast map, written to the database by the
+ * {@link ReservationMapStore} in batches once the write delay has passed. Bookings still take the booking lock,
+ * but the check and the write are a query and an update of the map, so the lock is no longer held during a commit.
+ * <p>
+ * The database lags behind the map by up to the write delay. Bookings, modifications and cancellations only read
+ * the map; availability read from the database (before the occupancy index is loaded or for past dates) may miss
+ * the latest changes.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "campsite.booking", name = "mode", havingValue = "write-behind")
+public class WriteBehindReservationService extends ReservationServiceImpl {
+
+    @Resource
+    private CampsiteRegistry campsiteRegistry;
+
+    @Resource
+    private BookingReferenceGenerator bookingReferenceGenerator;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectProvider<HazelcastInstance> hazelcastInstance;
+
+    private volatile IMap<String, ReservationRecord> reservations;
+
+    @PostConstruct
+    public void checkHazelcast() {
+        if (hazelcastInstance.getIfAvailable() == null) {
+            throw new IllegalStateException("campsite.booking.mode=write-behind requires campsite.hazelcast.enabled");
+        }
+    }
+
+    /**
+     * Writes the pending changes to the database without waiting for the write delay
+     */
+    public void flush() {
+        reservations().flush();
+    }
+
+    /**
+     * The map is opened on first use rather than on startup: opening it creates its {@link ReservationMapStore}
+     * from Hazelcast threads, which would wait for the context to be initialized
+     */
+    private IMap<String, ReservationRecord> reservations() {
+        IMap<String, ReservationRecord> map = reservations;
+        if (map == null) {
+            synchronized (this) {
+                map = reservations;
+                if (map == null) {
+                    map = hazelcastInstance.getObject().getMap(ReservationMapStore.MAP_NAME);
+                    reservations = map;
+                }
+            }
+        }
+        return map;
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Reservation createReservation(ReservationDTO reservationDTO) throws AccessDeniedException {
+        LocalDate checkInDate = reservationDTO.getCheckInDate();
+        LocalDate checkoutDate = reservationDTO.getCheckoutDate();
+        validateDateRange(checkInDate, checkoutDate);
+        validateStayLength(checkInDate, checkoutDate);
+        ReservationRecord reservation = newRecord(reservationDTO, campsiteRegistry.resolve(reservationDTO.getCampsite()));
+        try (BookingLock bookingLock = acquireLock(reservation.getCampsite(), checkInDate, checkoutDate, 20)) {
+            if (!isVacant(reservation.getCampsite(), checkInDate, checkoutDate, null)) {
+                throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+            }
+            reservations().set(reservation.getReservationId(), reservation);
+            publishCreated(reservation);
+        }
+        return toReservation(reservation);
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Reservation> createReservations(List<ReservationDTO> reservationDTOs) throws AccessDeniedException {
+        List<ReservationDTO> stays = validateBatch(reservationDTOs);
+        Map<String, ReservationRecord> batch = new LinkedHashMap<>();
+        for (ReservationDTO stay : stays) {
+            ReservationRecord reservation = newRecord(stay, campsiteRegistry.resolve(stay.getCampsite()));
+            batch.put(reservation.getReservationId(), reservation);
+        }
+        Deque<BookingLock> bookingLocks = new ArrayDeque<>();
+        try {
+            acquireLocks(stays, bookingLocks);
+            for (ReservationRecord reservation : batch.values()) {
+                if (!isVacant(reservation.getCampsite(), reservation.getArrivalDate(), reservation.getDepartureDate(), null)) {
+                    throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+                }
+            }
+            reservations().setAll(batch);
+            batch.values().forEach(this::publishCreated);
+        } finally {
+            releaseLocks(bookingLocks);
+        }
+        return batch.values().stream().map(this::toReservation).collect(Collectors.toList());
+    }
+
+    /**
+     * The reservation is replaced only if it is unchanged since it was read, it may have been modified or cancelled
+     * while waiting for the lock
+     */
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Reservation modifyReservation(UpdateReservationDTO updateReservationDTO) throws AccessDeniedException, ObjectNotFoundException {
+        LocalDate checkInDate = updateReservationDTO.getCheckInDate();
+        LocalDate checkoutDate = updateReservationDTO.getCheckoutDate();
+        validateDateRange(checkInDate, checkoutDate);
+        validateStayLength(checkInDate, checkoutDate);
+        String reservationId = updateReservationDTO.getBookingReferenceId();
+        ReservationRecord current = find(reservationId);
+        String campsite = updateReservationDTO.getCampsite() == null ? current.getCampsite()
+                : campsiteRegistry.resolve(updateReservationDTO.getCampsite());
+        ReservationRecord modified = current.moveTo(campsite, checkInDate, checkoutDate);
+        try (BookingLock bookingLock = acquireLock(campsite, checkInDate, checkoutDate, 3)) {
+            //the reservation may move onto some of its own nights
+            if (!isVacant(campsite, checkInDate, checkoutDate, reservationId) || !reservations().replace(reservationId, current, modified)) {
+                throw AccessDeniedException.reservationConflict(RESERVATION_DATE_CONFLICT);
+            }
+            log.info("Updating the arrival date from {} to {} and checkout date from {} to {} ",
+                    current.getArrivalDate(), checkInDate, current.getDepartureDate(), checkoutDate);
+            eventPublisher.publishEvent(ReservationChangedEvent.modified(reservationId, current.getCampsite(),
+                    current.getArrivalDate(), current.getDepartureDate(), campsite, checkInDate, checkoutDate));
+        }
+        return toReservation(modified);
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void cancelReservation(String reservationId) throws ObjectNotFoundException {
+        ReservationRecord reservation = reservations().remove(reservationId);
+        if (reservation == null) {
+            throw new ObjectNotFoundException("Unable to find reservation with ID: " + reservationId);
+        }
+        log.info("Deleting reservation {}", reservationId);
+        eventPublisher.publishEvent(ReservationChangedEvent.cancelled(reservationId, reservation.getCampsite(),
+                reservation.getArrivalDate(), reservation.getDepartureDate()));
+    }
+
+    @Override
+    @Timed(SERVICE_TIMER)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Reservation retrieveReservation(String reservationId) {
+        return toReservation(find(reservationId));
+    }
+
+    /**
+     * Reservations not in the map, e.g. past ones, are loaded from the database
+     */
+    private ReservationRecord find(String reservationId) {
+        ReservationRecord reservation = reservations().get(reservationId);
+        if (reservation == null) {
+            throw new ObjectNotFoundException("Unable to find reservation with ID: " + reservationId);
+        }
+        return reservation;
+    }
+
+    /**
+     * Queries the campsite and arrival indexes of the map
+     * @param excludedReservationId a reservation whose nights do not count as booked, null for none
+     */
+    private boolean isVacant(String campsite, LocalDate startDate, LocalDate endDate, String excludedReservationId) {
+        Predicate<String, ReservationRecord> overlapping = Predicates.and(
+                Predicates.equal("campsite", campsite),
+                Predicates.lessThan("arrivalDate", endDate),
+                Predicates.greaterThan("departureDate", startDate));
+        return reservations().keySet(overlapping).stream().allMatch(reservationId -> reservationId.equals(excludedReservationId));
+    }
+
+    private ReservationRecord newRecord(ReservationDTO reservationDTO, String campsite) {
+        return new ReservationRecord(bookingReferenceGenerator.next(), campsite, reservationDTO.getCheckInDate(),
+                reservationDTO.getCheckoutDate(), reservationDTO.getEmail(), reservationDTO.getFullName());
+    }
+
+    private void publishCreated(ReservationRecord reservation) {
+        eventPublisher.publishEvent(ReservationChangedEvent.created(reservation.getReservationId(), reservation.getCampsite(),
+                reservation.getArrivalDate(), reservation.getDepartureDate()));
+    }
+
+    /**
+     * @return a transient reservation with the campsite and the user details, enough to answer the request
+     */
+    private Reservation toReservation(ReservationRecord record) {
+        User user = new User();
+        user.setEmail(record.getEmail());
+        user.setFullName(record.getFullName());
+        Reservation reservation = new Reservation();
+        reservation.setReservationId(record.getReservationId());
+        reservation.setCampsite(campsiteRegistry.getReference(record.getCampsite()));
+        reservation.setArrivalDate(record.getArrivalDate());
+        reservation.setDepartureDate(record.getDepartureDate());
+        reservation.setReservationStatus(ACTIVE);
+        reservation.setUser(user);
+        return reservation;
+    }
+}
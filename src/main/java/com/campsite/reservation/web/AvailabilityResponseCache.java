@@ -0,0 +1,163 @@
+package com.campsite.reservation.web;
+
+import com.campsite.reservation.config.ReplicaRoutingDataSource;
+import com.campsite.reservation.event.OccupancyChangedEvent;
+import com.campsite.reservation.model.AvailableDate;
+import com.campsite.reservation.service.CampsiteRegistry;
+import com.campsite.reservation.service.ReservationService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized availability of the default window (tomorrow to a month away) of each requested campsite, plain and
+ * gzipped, so that the most common request is answered without computing or serializing anything.
+ * <p>
+ * A response is only served for the availability version it was built for, the version of this node's calendar.
+ * Responses are rebuilt in the background once this node applied a change of their campsite, made here or on another
+ * node, and at midnight when the default window moves; a request finding an outdated response rebuilds it first.
+ */
+@Slf4j
+@Component
+public class AvailabilityResponseCache {
+
+    /**
+     * The serialized availability of a campsite
+     */
+    @Getter
+    public static final class Response {
+
+        /**
+         * The {@link ReservationService#retrieveAvailabilityVersion} the response was built for
+         */
+        private final String version;
+
+        private final byte[] json;
+
+        private final byte[] gzip;
+
+        private Response(String version, byte[] json, byte[] gzip) {
+            this.version = version;
+            this.json = json;
+            this.gzip = gzip;
+        }
+    }
+
+    private final ReservationService reservationService;
+
+    private final CampsiteRegistry campsiteRegistry;
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+
+    /**
+     * One per campsite, a campsite is rebuilt once at a time without holding up the other campsites
+     */
+    private final Map<String, Object> rebuildLocks = new ConcurrentHashMap<>();
+
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "availability-response");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AvailabilityResponseCache(ReservationService reservationService, CampsiteRegistry campsiteRegistry,
+                                     ObjectMapper objectMapper) {
+        this.reservationService = reservationService;
+        this.campsiteRegistry = campsiteRegistry;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param campsite the code of the campsite, the default campsite if null
+     * @param version the current availability version of the default window of the campsite
+     * @return the response for this version or a later one
+     * @throws com.campsite.reservation.exception.ObjectNotFoundException if there is no campsite with this code
+     */
+    public Response get(String campsite, String version) {
+        String code = campsiteRegistry.resolve(campsite);
+        Response response = responses.get(code);
+        if (response != null && response.version.equals(version)) {
+            return response;
+        }
+        return rebuild(code);
+    }
+
+    @EventListener
+    public void onOccupancyChanged(OccupancyChangedEvent event) {
+        event.getCampsites().stream()
+                .filter(responses::containsKey)
+                .forEach(campsite -> rebuilder.execute(() -> rebuildQuietly(campsite)));
+    }
+
+    @Scheduled(cron = "0 0 0 * * *")
+    public void rebuildAll() {
+        responses.keySet().forEach(campsite -> rebuilder.execute(() -> rebuildQuietly(campsite)));
+    }
+
+    /**
+     * The version is read before the availability, and it only moves once this node applied the change behind it,
+     * so the response is never older than its version. The availability is read from the primary, where the
+     * availability cache loads its windows from
+     */
+    private Response rebuild(String campsite) {
+        synchronized (rebuildLocks.computeIfAbsent(campsite, code -> new Object())) {
+            String version = reservationService.retrieveAvailabilityVersion(campsite, null, null);
+            Response response = responses.get(campsite);
+            if (response != null && response.version.equals(version)) {
+                return response;
+            }
+            List<AvailableDate> availableDates = ReplicaRoutingDataSource.onPrimary(
+                    () -> reservationService.retrieveAvailableDates(campsite, null, null));
+            try {
+                byte[] json = objectMapper.writeValueAsBytes(availableDates);
+                response = new Response(version, json, gzip(json));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Unable to serialize the availability of " + campsite, e);
+            }
+            responses.put(campsite, response);
+            return response;
+        }
+    }
+
+    private void rebuildQuietly(String campsite) {
+        try {
+            rebuild(campsite);
+        } catch (RuntimeException e) {
+            //the next request rebuilds it
+            log.warn("Unable to rebuild the availability of campsite {}", campsite, e);
+            responses.remove(campsite);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuilder.shutdownNow();
+    }
+}
@@ -0,0 +1,102 @@
+package com.campsite.reservation.web;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.exception.ServiceUnavailableException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control in front of the booking endpoints.
+ * <p>
+ * At most campsite.admission.max-concurrent bookings are processed at a time, up to campsite.admission.queue-depth
+ * more wait in arrival order for campsite.admission.queue-timeout. Beyond that requests are turned away straight
+ * away with a {@link ServiceUnavailableException} (503 with Retry-After) instead of parking a Tomcat thread.
+ */
+@Component
+@ConditionalOnProperty(prefix = "campsite.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class BookingAdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String ADMITTED = BookingAdmissionInterceptor.class.getName() + ".ADMITTED";
+
+    private static final String OVERLOADED = "Too many booking requests in progress, please retry";
+
+    private final Semaphore permits;
+
+    private final int maxConcurrent;
+
+    private final int queueDepth;
+
+    private final Duration queueTimeout;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public BookingAdmissionInterceptor(CampsiteProperties properties) {
+        CampsiteProperties.Admission settings = properties.getAdmission();
+        this.maxConcurrent = settings.getMaxConcurrent();
+        this.queueDepth = settings.getQueueDepth();
+        this.queueTimeout = settings.getQueueTimeout();
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!admit()) {
+            rejected.increment();
+            throw ServiceUnavailableException.overloaded(OVERLOADED);
+        }
+        request.setAttribute(ADMITTED, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMITTED) != null) {
+            request.removeAttribute(ADMITTED);
+            permits.release();
+        }
+    }
+
+    private boolean admit() {
+        try {
+            //a zero timeout, unlike tryAcquire(), does not jump ahead of the requests already waiting
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            if (waiting.incrementAndGet() > queueDepth) {
+                waiting.decrementAndGet();
+                return false;
+            }
+            try {
+                return permits.tryAcquire(queueTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public int getInFlightCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
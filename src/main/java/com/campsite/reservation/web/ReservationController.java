@@ -1,11 +1,15 @@
 package com.campsite.reservation.web;
 
 import com.campsite.reservation.model.AvailableDate;
+import com.campsite.reservation.model.BatchReservationDTO;
 import com.campsite.reservation.model.Reservation;
 import com.campsite.reservation.model.ReservationDTO;
 import com.campsite.reservation.model.ReservationResponseDTO;
 import com.campsite.reservation.model.UpdateReservationDTO;
+import com.campsite.reservation.service.AvailabilityStream;
 import com.campsite.reservation.service.ReservationService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,12 +19,16 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.annotation.Resource;
 import javax.validation.Valid;
 import javax.websocket.server.PathParam;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.springframework.http.HttpStatus.OK;
 
@@ -33,16 +41,70 @@ public class ReservationController {
     @Resource
     private ReservationService reservationService;
 
+    @Resource
+    private AvailabilityStream availabilityStream;
+
+    @Resource
+    private AvailabilityResponseCache availabilityResponseCache;
+
     /**
-     * Returns the list of {@link AvailableDate}s
+     * Returns the list of {@link AvailableDate}s of a campsite
+     * @param campsite optional code of the campsite. If not provided, the default campsite is used
      * @param startDate optional arrival date in format yyyy-mm-dd. If not provided, the next day is used
      * @param endDate optional departure date in format yyyy-mm-dd. If not provided, the end date is 30 days from arrival date
-     * @return the list of {@link AvailableDate}s
+     * @return the list of {@link AvailableDate}s with an ETag, or 304 Not Modified if it matches If-None-Match.
+     * Without dates the pre-serialized response of the {@link AvailabilityResponseCache} is sent, gzipped if accepted
      */
     @GetMapping("/availability")
     @ResponseBody
-    public ResponseEntity<List<AvailableDate>> checkReservation(@PathParam("startDate") LocalDate startDate, @PathParam("endDate") LocalDate endDate) {
-        return new ResponseEntity<>(reservationService.retrieveAvailableDates(startDate, endDate), OK);
+    public ResponseEntity<?> checkReservation(@PathParam("campsite") String campsite, @PathParam("startDate") LocalDate startDate,
+                                              @PathParam("endDate") LocalDate endDate, WebRequest webRequest) {
+        //read before the availability, a change committed in between gives a newer version on the next request
+        String version = reservationService.retrieveAvailabilityVersion(campsite, startDate, endDate);
+        if (webRequest.checkNotModified(version)) {
+            return null;
+        }
+        if (startDate == null && endDate == null) {
+            AvailabilityResponseCache.Response response = availabilityResponseCache.get(campsite, version);
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(response.getVersion())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING);
+            String acceptEncoding = webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(response.getGzip());
+            }
+            return builder.body(response.getJson());
+        }
+        return new ResponseEntity<>(reservationService.retrieveAvailableDates(campsite, startDate, endDate), OK);
+    }
+
+    /**
+     * Streams the availability changes of a campsite as server-sent events. The first event, named "snapshot", carries
+     * the {@link AvailableDate}s of the next 30 days, each following "availability" event carries the
+     * {@link com.campsite.reservation.model.AvailabilityChange}s of a committed booking, modification or cancellation
+     * once this node applied it. The snapshot is read after subscribing, so a change it already reflects may follow it
+     * @param campsite optional code of the campsite. If not provided, the default campsite is used
+     * @return the event stream
+     */
+    @GetMapping(path = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailability(@PathParam("campsite") String campsite) throws IOException {
+        SseEmitter emitter = availabilityStream.subscribe(campsite);
+        emitter.send(SseEmitter.event().name(AvailabilityStream.SNAPSHOT_EVENT)
+                .data(reservationService.retrieveAvailableDates(campsite, null, null)));
+        return emitter;
+    }
+
+    /**
+     * Returns the campsites that are free for a whole stay
+     * @param startDate arrival date in format yyyy-mm-dd
+     * @param endDate departure date in format yyyy-mm-dd
+     * @return the codes of the campsites with no reservation between the dates
+     */
+    @GetMapping("/availability/campsites")
+    @ResponseBody
+    public ResponseEntity<List<String>> checkCampsites(@PathParam("startDate") LocalDate startDate, @PathParam("endDate") LocalDate endDate) {
+        return new ResponseEntity<>(reservationService.retrieveAvailableCampsites(startDate, endDate), OK);
     }
 
     /**
@@ -57,6 +119,21 @@ public class ReservationController {
         return getReservationResponse(createdReservation);
     }
 
+    /**
+     * Books several stays at once, either all of them are booked or none is
+     * @param batchReservationDTO the payload with the bookings to be made
+     * @return the {@link ReservationResponseDTO}s containing the booking Ids, in order of arrival
+     */
+    @PostMapping("/book/batch")
+    @ResponseBody
+    public ResponseEntity<List<ReservationResponseDTO>> createReservations(@Valid @RequestBody BatchReservationDTO batchReservationDTO) {
+        List<ReservationResponseDTO> responseDTOs = reservationService.createReservations(batchReservationDTO.getReservations())
+                .stream()
+                .map(this::toResponseDTO)
+                .collect(Collectors.toList());
+        return new ResponseEntity<>(responseDTOs, OK);
+    }
+
     /**
      * Modifies an existing reservation (provided there's availability)
      * @param updateReservationDTO the payload to be used for update
@@ -80,10 +157,15 @@ public class ReservationController {
     }
 
     private ResponseEntity<ReservationResponseDTO> getReservationResponse(Reservation createdReservation) {
+        return new ResponseEntity<>(toResponseDTO(createdReservation), OK);
+    }
+
+    private ReservationResponseDTO toResponseDTO(Reservation reservation) {
         ReservationResponseDTO responseDTO = new ReservationResponseDTO();
-        responseDTO.setBookingReferenceId(createdReservation.getReservationId());
-        responseDTO.setStatus(createdReservation.getReservationStatus().toString());
-        responseDTO.setFullName(createdReservation.getUser().getFullName());
-        return new ResponseEntity<>(responseDTO, OK);
+        responseDTO.setBookingReferenceId(reservation.getReservationId());
+        responseDTO.setStatus(reservation.getReservationStatus().toString());
+        responseDTO.setFullName(reservation.getUser().getFullName());
+        responseDTO.setCampsite(reservation.getCampsite().getCode());
+        return responseDTO;
     }
 }
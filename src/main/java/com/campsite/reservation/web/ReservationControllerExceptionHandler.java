@@ -1,11 +1,15 @@
 package com.campsite.reservation.web;
 
+import com.campsite.reservation.config.CampsiteProperties;
 import com.campsite.reservation.exception.AccessDeniedException;
 import com.campsite.reservation.exception.ErrorDTO;
 import com.campsite.reservation.exception.InvalidFieldException;
 import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.exception.ServiceUnavailableException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -13,17 +17,22 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import javax.annotation.Resource;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.FORBIDDEN;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 
 @RestControllerAdvice
 @Slf4j
 public class ReservationControllerExceptionHandler {
 
+    @Resource
+    private CampsiteProperties campsiteProperties;
+
     @ResponseStatus(BAD_REQUEST)
     @ResponseBody
     @ExceptionHandler(InvalidFieldException.class)
@@ -57,4 +66,15 @@ public class ReservationControllerExceptionHandler {
     public ErrorDTO handleAccessDeniedException(AccessDeniedException ex) {
         return new ErrorDTO(ex.getMessage(), ex.getErrorCode());
     }
+
+    /**
+     * Overload is answered with a 503 telling the client when to retry
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ErrorDTO> handleServiceUnavailableException(ServiceUnavailableException ex) {
+        log.debug("Booking turned away: {}", ex.getMessage());
+        return ResponseEntity.status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, campsiteProperties.getAdmission().getRetryAfter().toSeconds())))
+                .body(new ErrorDTO(ex.getMessage(), ex.getErrorCode()));
+    }
 }
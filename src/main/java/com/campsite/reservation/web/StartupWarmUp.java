@@ -0,0 +1,80 @@
+package com.campsite.reservation.web;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.model.AvailableDate;
+import com.campsite.reservation.service.ReservationService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the availability queries and serializes their results before the application reports ready, so that the
+ * first requests find the classes loaded, the hot code compiled and the response of the default window built.
+ * Spring Boot only moves to {@link ReadinessState#ACCEPTING_TRAFFIC} once the {@link ApplicationReadyEvent} listeners
+ * have returned, the readiness probe stays down in the meantime.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "campsite.warm-up", name = "enabled", havingValue = "true")
+public class StartupWarmUp {
+
+    @Resource
+    private ReservationService reservationService;
+
+    @Resource
+    private AvailabilityResponseCache availabilityResponseCache;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private CampsiteProperties campsiteProperties;
+
+    /**
+     * Runs after the occupancy index is loaded. A failure only leaves the application colder than it could be
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp(ApplicationReadyEvent event) {
+        CampsiteProperties.WarmUp warmUp = campsiteProperties.getWarmUp();
+        long start = System.nanoTime();
+        long deadline = start + warmUp.getMaxDuration().toNanos();
+        int iterations = 0;
+        try {
+            while (iterations < warmUp.getIterations() && System.nanoTime() < deadline) {
+                exercise(iterations++);
+            }
+            log.info("Warmed up with {} iterations in {} ms", iterations,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException | JsonProcessingException e) {
+            log.warn("Warm-up stopped after {} iterations", iterations, e);
+        }
+        if (warmUp.isExitWhenDone()) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    /**
+     * The default window as served by the controller, then windows starting on each of the next 30 days
+     */
+    private void exercise(int iteration) throws JsonProcessingException {
+        String version = reservationService.retrieveAvailabilityVersion(null, null, null);
+        availabilityResponseCache.get(null, version);
+        LocalDate startDate = LocalDate.now().plusDays(1 + iteration % 30);
+        List<AvailableDate> availableDates = reservationService.retrieveAvailableDates(null, startDate, startDate.plusDays(30));
+        objectMapper.writeValueAsBytes(availableDates);
+    }
+}
@@ -0,0 +1,13 @@
+-- Rejects overlapping stays of a campsite at the database level, used by campsite.booking.mode=exclusion-constraint
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+ALTER TABLE camp_reservation ADD COLUMN IF NOT EXISTS stay daterange
+    GENERATED ALWAYS AS (daterange(arrival_date, departure_date, '[)')) STORED;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'ex_reservation_campsite_stay') THEN
+        ALTER TABLE camp_reservation ADD CONSTRAINT ex_reservation_campsite_stay
+            EXCLUDE USING gist (campsite_id WITH =, stay WITH &&);
+    END IF;
+END $$;
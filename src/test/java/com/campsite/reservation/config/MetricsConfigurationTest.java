@@ -0,0 +1,38 @@
+package com.campsite.reservation.config;
+
+import com.campsite.reservation.TestUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.annotation.Resource;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class MetricsConfigurationTest {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void before() {
+        TestUtils.startHazelCastEmbedded();
+    }
+
+    @Test
+    void bindsHibernateStatistics() {
+        assertNotNull(meterRegistry.find("hibernate.sessions.open").functionCounter());
+        assertNotNull(meterRegistry.find("hibernate.cache.query.requests").tag("result", "hit").functionCounter());
+        assertNotNull(meterRegistry.find("hibernate.cache.query.requests").tag("result", "miss").functionCounter());
+    }
+
+    @Test
+    void bindsCampsiteMeters() {
+        assertNotNull(meterRegistry.find("campsite.booking.lock.wait").functionTimer());
+        assertNotNull(meterRegistry.find("campsite.availability.cache.requests").tag("result", "hit").functionCounter());
+    }
+}
@@ -0,0 +1,108 @@
+package com.campsite.reservation.lock;
+
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.model.Campsite;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HazelcastBookingLockManagerTest {
+
+    private static final String SITE = Campsite.DEFAULT_CODE;
+
+    private static HazelcastInstance hazelcastInstance;
+
+    private static BookingLockManager lockManager;
+
+    @BeforeAll
+    static void before() {
+        hazelcastInstance = TestUtils.startHazelCastEmbedded();
+        CampsiteProperties properties = new CampsiteProperties();
+        properties.getLock().setNamePrefix("lock-test-");
+        lockManager = new HazelcastBookingLockManager(hazelcastInstance, properties);
+    }
+
+    @AfterAll
+    static void after() {
+        hazelcastInstance.shutdown();
+    }
+
+    @Test
+    void overlappingBookingsContend() throws Exception {
+        LocalDate start = startOfWeek(1);
+        try (BookingLock lock = lockManager.tryLock(SITE, start, start.plusDays(3), 1, TimeUnit.SECONDS)) {
+            assertNotNull(lock);
+            assertNull(tryLockFromOtherThread(SITE, start.plusDays(2), start.plusDays(4)));
+            //same week, the lock is per week
+            assertNull(tryLockFromOtherThread(SITE, start.plusDays(4), start.plusDays(6)));
+            BookingLock otherWeek = tryLockFromOtherThread(SITE, start.plusDays(7), start.plusDays(9));
+            assertNotNull(otherWeek);
+        }
+        assertTrue(lockManager.getStatistics().getTimeoutCount() > 0);
+    }
+
+    @Test
+    void otherCampsitesDoNotContend() throws Exception {
+        LocalDate start = startOfWeek(5);
+        try (BookingLock lock = lockManager.tryLock(SITE, start, start.plusDays(2), 1, TimeUnit.SECONDS)) {
+            assertNotNull(lock);
+            BookingLock otherCampsite = tryLockFromOtherThread("B2", start, start.plusDays(2));
+            assertNotNull(otherCampsite);
+        }
+    }
+
+    @Test
+    void releasesPartiallyAcquiredLocks() throws Exception {
+        LocalDate start = startOfWeek(3);
+        BookingLock lock = tryLockFromOtherThread(SITE, start.plusDays(7), start.plusDays(8));
+        assertNotNull(lock);
+        assertNull(lockManager.tryLock(SITE, start.plusDays(6), start.plusDays(8), 100, TimeUnit.MILLISECONDS));
+        // the first week must have been released when the second could not be acquired
+        assertNotNull(tryLockFromOtherThread(SITE, start, start.plusDays(1)));
+    }
+
+    @Test
+    void destroysTheLocksOfPastWeeks() throws Exception {
+        LocalDate lastWeek = LocalDate.now().minusDays(7);
+        try (BookingLock lock = lockManager.tryLock("C3", lastWeek, lastWeek.plusDays(1), 1, TimeUnit.SECONDS)) {
+            assertNotNull(lock);
+        }
+        LocalDate nextWeek = startOfWeek(1);
+        try (BookingLock lock = lockManager.tryLock("C3", nextWeek, nextWeek.plusDays(1), 1, TimeUnit.SECONDS)) {
+            assertNotNull(lock);
+        }
+        ((HazelcastBookingLockManager) lockManager).destroyPastLocks();
+        long week = Math.floorDiv(lastWeek.toEpochDay(), 7);
+        assertThrows(RuntimeException.class, () -> hazelcastInstance.getCPSubsystem().getLock("lock-test-C3-" + week).lock());
+        assertNotNull(tryLockFromOtherThread("C3", nextWeek, nextWeek.plusDays(1)));
+    }
+
+    /**
+     * @return the first day of a lock week, weeks after the current one
+     */
+    private static LocalDate startOfWeek(int weeks) {
+        return LocalDate.ofEpochDay((Math.floorDiv(LocalDate.now().toEpochDay(), 7) + weeks) * 7);
+    }
+
+    private BookingLock tryLockFromOtherThread(String campsite, LocalDate start, LocalDate end) throws Exception {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return lockManager.tryLock(campsite, start, end, 100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }).get(30, TimeUnit.SECONDS);
+    }
+}
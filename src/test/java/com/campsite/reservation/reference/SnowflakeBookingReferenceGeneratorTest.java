@@ -0,0 +1,75 @@
+package com.campsite.reservation.reference;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeBookingReferenceGeneratorTest {
+
+    @Test
+    void referencesAreCompactAndTimeOrdered() {
+        SnowflakeBookingReferenceGenerator generator = new SnowflakeBookingReferenceGenerator(7);
+        String previous = generator.next();
+        // more than one millisecond worth of sequence numbers
+        for (int i = 0; i < 10_000; i++) {
+            String next = generator.next();
+            assertEquals(SnowflakeBookingReferenceGenerator.LENGTH, next.length());
+            assertTrue(next.compareTo(previous) > 0, next + " should sort after " + previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void referencesAreUniqueAcrossThreads() {
+        SnowflakeBookingReferenceGenerator generator = new SnowflakeBookingReferenceGenerator(1);
+        Set<String> references = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            workers.add(CompletableFuture.runAsync(() -> IntStream.range(0, 20_000).forEach(n -> references.add(generator.next()))));
+        }
+        workers.forEach(CompletableFuture::join);
+        assertEquals(8 * 20_000, references.size());
+    }
+
+    @Test
+    void nodesNeverCollide() {
+        long first = new SnowflakeBookingReferenceGenerator(1).nextId();
+        long second = new SnowflakeBookingReferenceGenerator(2).nextId();
+        assertNotEquals(first, second);
+        assertEquals(1, (first >>> 12) & SnowflakeBookingReferenceGenerator.MAX_NODE_ID);
+        assertEquals(2, (second >>> 12) & SnowflakeBookingReferenceGenerator.MAX_NODE_ID);
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeBookingReferenceGenerator(1024));
+    }
+
+    @Test
+    void nodeIdIsRequiredWithoutHazelcast() {
+        CampsiteProperties properties = new CampsiteProperties();
+        assertThrows(IllegalStateException.class, () -> new SnowflakeBookingReferenceGenerator(properties,
+                new StaticListableBeanFactory().getBeanProvider(HazelcastInstance.class)));
+        properties.getReference().setNodeId(5);
+        long id = new SnowflakeBookingReferenceGenerator(properties,
+                new StaticListableBeanFactory().getBeanProvider(HazelcastInstance.class)).nextId();
+        assertEquals(5, (id >>> 12) & SnowflakeBookingReferenceGenerator.MAX_NODE_ID);
+    }
+
+    @Test
+    void encodesInCrockfordBase32() {
+        assertEquals("0000000000000", SnowflakeBookingReferenceGenerator.encode(0));
+        assertEquals("000000000000Z", SnowflakeBookingReferenceGenerator.encode(31));
+        assertEquals("0000000000010", SnowflakeBookingReferenceGenerator.encode(32));
+        assertEquals("7ZZZZZZZZZZZZ", SnowflakeBookingReferenceGenerator.encode(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,93 @@
+package com.campsite.reservation.repository;
+
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservedStay;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+class ReservationRepositoryTest {
+
+    private static final String SITE = "repository-test";
+
+    private final LocalDate today = LocalDate.now();
+
+    @Resource
+    private ReservationRepository reservationRepository;
+
+    @Resource
+    private CampsiteRepository campsiteRepository;
+
+    @BeforeAll
+    static void before() {
+        TestUtils.startHazelCastEmbedded();
+    }
+
+    @BeforeEach
+    void setUp() {
+        Campsite campsite = new Campsite();
+        campsite.setCode(SITE);
+        campsite.setName(SITE);
+        campsiteRepository.save(campsite);
+        save(campsite, 3, 5);
+        save(campsite, 8, 10);
+        save(campsite, 12, 15);
+    }
+
+    @Test
+    void staysOverlappingTheDatesIncludeThoseCrossingTheirBounds() {
+        List<ReservedStay> stays = reservationRepository.retrieveStaysForDates(SITE, today.plusDays(4), today.plusDays(9));
+        assertEquals(2, stays.size());
+        assertStay(stays.get(0), 3, 5);
+        assertStay(stays.get(1), 8, 10);
+
+        stays = reservationRepository.retrieveStaysForDates(SITE, today.plusDays(9), today.plusDays(20));
+        assertEquals(2, stays.size());
+        assertStay(stays.get(0), 8, 10);
+        assertStay(stays.get(1), 12, 15);
+    }
+
+    @Test
+    void staysTouchingTheDatesDoNotOverlap() {
+        assertTrue(reservationRepository.retrieveStaysForDates(SITE, today.plusDays(5), today.plusDays(8)).isEmpty());
+        assertTrue(reservationRepository.retrieveStaysForDates(SITE, today.plusDays(1), today.plusDays(3)).isEmpty());
+        assertTrue(reservationRepository.retrieveStaysForDates("other", today.plusDays(1), today.plusDays(20)).isEmpty());
+    }
+
+    @Test
+    void reservationReadForUpdate() {
+        Reservation reservation = reservationRepository.findReservationForUpdate(SITE + "-8").orElseThrow();
+        assertEquals(today.plusDays(8), reservation.getArrivalDate());
+        assertTrue(reservationRepository.findReservationForUpdate(SITE + "-9").isEmpty());
+    }
+
+    private void save(Campsite campsite, int arrival, int departure) {
+        Reservation reservation = new Reservation();
+        reservation.setReservationId(SITE + "-" + arrival);
+        reservation.setCampsite(campsite);
+        reservation.setArrivalDate(today.plusDays(arrival));
+        reservation.setDepartureDate(today.plusDays(departure));
+        reservation.setReservationStatus(Reservation.STATUS.RESERVED);
+        reservationRepository.save(reservation);
+    }
+
+    private void assertStay(ReservedStay stay, int arrival, int departure) {
+        assertEquals(today.plusDays(arrival), stay.getArrivalDate());
+        assertEquals(today.plusDays(departure), stay.getDepartureDate());
+    }
+}
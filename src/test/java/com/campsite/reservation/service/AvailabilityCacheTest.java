@@ -0,0 +1,116 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.event.ReservationChangedEvent;
+import com.campsite.reservation.model.AvailableDate;
+import com.campsite.reservation.model.Campsite;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AvailabilityCacheTest {
+
+    private static final String SITE = Campsite.DEFAULT_CODE;
+
+    private static final String OTHER_SITE = "B2";
+
+    private static HazelcastInstance hazelcastInstance;
+
+    private final LocalDate today = LocalDate.now();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeAll
+    static void before() {
+        hazelcastInstance = TestUtils.startHazelCastEmbedded();
+    }
+
+    @AfterAll
+    static void after() {
+        hazelcastInstance.shutdown();
+    }
+
+    @Test
+    void evictsOverlappingWindowsOnly() {
+        AvailabilityCache cache = enabledCache();
+
+        List<AvailableDate> first = get(cache, 1, 10);
+        assertEquals(1, first.size());
+        assertEquals(today.plusDays(1), first.get(0).getStartDate());
+        get(cache, 1, 10);
+        get(cache, 12, 20);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        cache.onReservationChanged(ReservationChangedEvent.created("a", SITE, today.plusDays(8), today.plusDays(11)));
+        get(cache, 1, 10);
+        get(cache, 12, 20);
+        assertEquals(3, loads.get());
+
+        cache.onReservationChanged(ReservationChangedEvent.modified("a", SITE, today.plusDays(8), today.plusDays(11),
+                SITE, today.plusDays(19), today.plusDays(20)));
+        get(cache, 1, 10);
+        get(cache, 12, 20);
+        assertEquals(5, loads.get());
+
+        get(cache, OTHER_SITE, 12, 20);
+        cache.onReservationChanged(ReservationChangedEvent.cancelled("a", SITE, today.plusDays(19), today.plusDays(20)));
+        get(cache, OTHER_SITE, 12, 20);
+        assertEquals(6, loads.get());
+    }
+
+    @Test
+    void windowLoadedBeforeAChangeIsNotStored() {
+        AvailabilityCache cache = enabledCache();
+        String site = "C3";
+        cache.get(site, today.plusDays(1), today.plusDays(10), (startDate, endDate) -> {
+            loads.incrementAndGet();
+            //committed while the window was being read
+            cache.onReservationChanged(ReservationChangedEvent.created("a", site, today.plusDays(2), today.plusDays(4)));
+            return Collections.singletonList(new AvailableDate(startDate, endDate));
+        });
+        List<AvailableDate> reloaded = get(cache, site, 1, 10);
+        assertEquals(2, loads.get());
+        assertEquals(1, reloaded.size());
+        get(cache, site, 1, 10);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void disabledCacheCallsThrough() {
+        AvailabilityCache cache = new AvailabilityCache();
+        get(cache, 1, 10);
+        get(cache, 1, 10);
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    private AvailabilityCache enabledCache() {
+        CampsiteProperties properties = new CampsiteProperties();
+        properties.getAvailabilityCache().setEnabled(true);
+        return new AvailabilityCache(new StaticListableBeanFactory(Collections.singletonMap("hazelcastInstance", hazelcastInstance))
+                .getBeanProvider(HazelcastInstance.class), properties);
+    }
+
+    private List<AvailableDate> get(AvailabilityCache cache, int start, int end) {
+        return get(cache, SITE, start, end);
+    }
+
+    private List<AvailableDate> get(AvailabilityCache cache, String campsite, int start, int end) {
+        return cache.get(campsite, today.plusDays(start), today.plusDays(end), (startDate, endDate) -> {
+            loads.incrementAndGet();
+            return Collections.singletonList(new AvailableDate(startDate, endDate));
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.model.AvailabilityChange;
+import com.campsite.reservation.model.Campsite;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AvailabilityStreamTest {
+
+    private static final String SITE = Campsite.DEFAULT_CODE;
+
+    private static final String OTHER_SITE = "B2";
+
+    private final LocalDate today = LocalDate.now();
+
+    @Test
+    void keepsChangesWithinTheBookableWindow() {
+        List<AvailabilityChange> changes = AvailabilityStream.withinBookableWindow(Arrays.asList(
+                //already departed, nothing to push
+                new AvailabilityChange(SITE, today.minusDays(3), today, true),
+                new AvailabilityChange(SITE, today.plusDays(2), today.plusDays(4), true),
+                new AvailabilityChange(OTHER_SITE, today.plusMonths(1).minusDays(1), today.plusMonths(1).plusDays(2), false)));
+
+        assertEquals(2, changes.size());
+        AvailabilityChange released = changes.get(0);
+        assertEquals(SITE, released.getCampsite());
+        assertEquals(today.plusDays(2), released.getStartDate());
+        assertEquals(today.plusDays(4), released.getEndDate());
+        assertTrue(released.isAvailable());
+        AvailabilityChange booked = changes.get(1);
+        assertEquals(OTHER_SITE, booked.getCampsite());
+        assertEquals(today.plusMonths(1).minusDays(1), booked.getStartDate());
+        assertEquals(today.plusMonths(1), booked.getEndDate());
+        assertFalse(booked.isAvailable());
+    }
+
+    @Test
+    void startedStaysAreClippedToTomorrow() {
+        List<AvailabilityChange> changes = AvailabilityStream.withinBookableWindow(Arrays.asList(
+                new AvailabilityChange(SITE, today.minusDays(1), today.plusDays(2), true)));
+        assertEquals(1, changes.size());
+        assertEquals(today.plusDays(1), changes.get(0).getStartDate());
+        assertEquals(today.plusDays(2), changes.get(0).getEndDate());
+    }
+}
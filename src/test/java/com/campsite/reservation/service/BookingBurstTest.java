@@ -0,0 +1,129 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.exception.AccessDeniedException;
+import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.lock.BookingLock;
+import com.campsite.reservation.lock.BookingLockManager;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.repository.CampsiteRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bookings queued on the booking lock must not hold a database connection, reads are served while they wait
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BookingBurstTest {
+
+    private static final String CAMPSITE = "burst";
+
+    @BeforeAll
+    public static void before() {
+        TestUtils.startHazelCastEmbedded();
+    }
+
+    @Resource
+    private ReservationService reservationService;
+
+    @Resource
+    private BookingLockManager bookingLockManager;
+
+    @Resource
+    private CampsiteRepository campsiteRepository;
+
+    @Resource
+    private CampsiteRegistry campsiteRegistry;
+
+    @Resource
+    private DataSource dataSource;
+
+    @Test
+    void readsStayResponsiveWhileBookingsWaitForTheLock() throws Exception {
+        createCampsite();
+        LocalDate arrivalDate = LocalDate.now().plusDays(10);
+        LocalDate departureDate = arrivalDate.plusDays(2);
+        int bookers = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize() * 2;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(bookers);
+        List<Future<?>> bookings = new ArrayList<>();
+        try {
+            CountDownLatch started = new CountDownLatch(bookers);
+            try (BookingLock bookingLock = bookingLockManager.tryLock(CAMPSITE, arrivalDate, departureDate, 1, TimeUnit.SECONDS)) {
+                assertNotNull(bookingLock);
+                for (int i = 0; i < bookers; i++) {
+                    ReservationDTO reservationDTO = reservation("burst" + i + "@doe.com", arrivalDate, departureDate);
+                    bookings.add(executorService.submit(() -> {
+                        started.countDown();
+                        return reservationService.createReservation(reservationDTO);
+                    }));
+                }
+                started.await();
+                TimeUnit.MILLISECONDS.sleep(500);
+
+                //more bookings are queued than there are connections in the pool
+                assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                    assertThrows(ObjectNotFoundException.class, () -> reservationService.retrieveReservation("unknown"));
+                    reservationService.retrieveAvailableDates(CAMPSITE, arrivalDate, departureDate);
+                });
+            }
+
+            int booked = 0;
+            for (Future<?> booking : bookings) {
+                try {
+                    assertNotNull(booking.get(30, TimeUnit.SECONDS));
+                    booked++;
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof AccessDeniedException, e.getCause().toString());
+                }
+            }
+            assertEquals(1, booked);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void createCampsite() {
+        if (campsiteRepository.findCampsiteByCode(CAMPSITE).isEmpty()) {
+            Campsite campsite = new Campsite();
+            campsite.setCode(CAMPSITE);
+            campsite.setName("Burst");
+            campsiteRepository.save(campsite);
+        }
+        campsiteRegistry.resolve(CAMPSITE);
+    }
+
+    private static ReservationDTO reservation(String email, LocalDate arrivalDate, LocalDate departureDate) {
+        ReservationDTO reservationDTO = new ReservationDTO();
+        reservationDTO.setEmail(email);
+        reservationDTO.setFullName("John Doe");
+        reservationDTO.setCampsite(CAMPSITE);
+        reservationDTO.setCheckInDate(arrivalDate);
+        reservationDTO.setCheckoutDate(departureDate);
+        return reservationDTO;
+    }
+}
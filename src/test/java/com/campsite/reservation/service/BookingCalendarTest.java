@@ -0,0 +1,111 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//the tests share the calendar map and empty it before running
+@Execution(ExecutionMode.SAME_THREAD)
+class BookingCalendarTest {
+
+    private static final String SITE = Campsite.DEFAULT_CODE;
+
+    private static HazelcastInstance hazelcastInstance;
+
+    private final LocalDate today = LocalDate.now();
+
+    private final ReservationRepository reservationRepository = mock(ReservationRepository.class);
+
+    @BeforeAll
+    static void before() {
+        hazelcastInstance = TestUtils.startHazelCastEmbedded();
+    }
+
+    @AfterAll
+    static void after() {
+        hazelcastInstance.shutdown();
+    }
+
+    @BeforeEach
+    void setUp() {
+        hazelcastInstance.getMap(BookingCalendar.MAP_NAME).clear();
+        when(reservationRepository.retrieveReservationsDepartingAfter(any())).thenReturn(
+                List.of(reservation(today.plusDays(2), today.plusDays(4))));
+    }
+
+    @Test
+    void loadedOnceFromTheDatabase() {
+        BookingCalendar node = newCalendar();
+        BookingCalendar otherNode = newCalendar();
+        assertFalse(node.claim(SITE, today.plusDays(3), today.plusDays(5)));
+        assertFalse(otherNode.claim(SITE, today.plusDays(1), today.plusDays(3)));
+        assertTrue(otherNode.claim(SITE, today.plusDays(4), today.plusDays(6)));
+        assertFalse(node.claim(SITE, today.plusDays(5), today.plusDays(6)));
+        verify(reservationRepository, times(1)).retrieveReservationsDepartingAfter(any());
+    }
+
+    @Test
+    void stayOverTwoWeeksClaimsBothOrNone() {
+        BookingCalendar calendar = newCalendar();
+        LocalDate sunday = today.plusDays(7).with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+        assertTrue(calendar.claim(SITE, sunday.plusDays(1), sunday.plusDays(2)));
+        //the night of the first week is given back when the second week is taken
+        assertFalse(calendar.claim(SITE, sunday.minusDays(1), sunday.plusDays(2)));
+        assertTrue(calendar.claim(SITE, sunday.minusDays(1), sunday.plusDays(1)));
+    }
+
+    @Test
+    void reservationMovesOntoItsOwnNights() {
+        BookingCalendar calendar = newCalendar();
+        assertTrue(calendar.claim(SITE, today.plusDays(3), today.plusDays(5), today.plusDays(2), today.plusDays(4)));
+        calendar.release(SITE, today.plusDays(2), today.plusDays(4), today.plusDays(3), today.plusDays(5));
+        assertTrue(calendar.claim(SITE, today.plusDays(1), today.plusDays(3)));
+        assertFalse(calendar.claim(SITE, today.plusDays(4), today.plusDays(5)));
+    }
+
+    @Test
+    void releasedNightsCanBeClaimedAgain() {
+        BookingCalendar calendar = newCalendar();
+        calendar.release(SITE, today.plusDays(2), today.plusDays(4));
+        assertTrue(calendar.claim(SITE, today.plusDays(2), today.plusDays(3)));
+        assertTrue(calendar.claim(SITE, today.plusDays(3), today.plusDays(4)));
+    }
+
+    private BookingCalendar newCalendar() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Collections.singletonMap("hazelcastInstance", hazelcastInstance));
+        return new BookingCalendar(beanFactory.getBeanProvider(HazelcastInstance.class), reservationRepository);
+    }
+
+    private static Reservation reservation(LocalDate arrivalDate, LocalDate departureDate) {
+        Campsite campsite = new Campsite();
+        campsite.setCode(SITE);
+        Reservation reservation = new Reservation();
+        reservation.setCampsite(campsite);
+        reservation.setArrivalDate(arrivalDate);
+        reservation.setDepartureDate(departureDate);
+        return reservation;
+    }
+}
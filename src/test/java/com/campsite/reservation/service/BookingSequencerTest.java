@@ -0,0 +1,235 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.exception.AccessDeniedException;
+import com.campsite.reservation.exception.ServiceUnavailableException;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.Reservation;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingSequencerTest {
+
+    private static final String SITE = Campsite.DEFAULT_CODE;
+
+    private final LocalDate today = LocalDate.now();
+
+    private final CountingTransactionManager transactionManager = new CountingTransactionManager();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private OccupancyIndex occupancyIndex;
+
+    private BookingSequencer bookingSequencer;
+
+    @BeforeEach
+    void setUp() {
+        occupancyIndex = new OccupancyIndex();
+        Campsite campsite = new Campsite();
+        campsite.setCode(SITE);
+        Reservation reservation = new Reservation();
+        reservation.setCampsite(campsite);
+        reservation.setArrivalDate(today.plusDays(3));
+        reservation.setDepartureDate(today.plusDays(5));
+        occupancyIndex.load(today, List.of(reservation));
+        CampsiteProperties properties = new CampsiteProperties();
+        properties.getBooking().getSequencer().setResultTimeout(Duration.ofSeconds(3));
+        bookingSequencer = new BookingSequencer(transactionManager, occupancyIndex, properties,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        bookingSequencer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        bookingSequencer.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void queuedRequestsShareOneTransaction() throws Exception {
+        CountDownLatch writerBlocked = blockWriter();
+        List<CompletableFuture<Boolean>> bookings = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            bookings.add(submit(pendingOccupancy -> {
+                if (!pendingOccupancy.isVacant(SITE, today.plusDays(6), today.plusDays(7))) {
+                    throw AccessDeniedException.reservationConflict("taken");
+                }
+                pendingOccupancy.claim(SITE, today.plusDays(6), today.plusDays(7));
+                return true;
+            }));
+        }
+        awaitQueued(10);
+        writerBlocked.countDown();
+
+        int booked = 0;
+        int conflicts = 0;
+        for (CompletableFuture<Boolean> booking : bookings) {
+            try {
+                booking.join();
+                booked++;
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof AccessDeniedException);
+                conflicts++;
+            }
+        }
+        assertEquals(1, booked);
+        assertEquals(9, conflicts);
+        assertEquals(2, transactionManager.commits.get());
+        assertEquals(0, transactionManager.rollbacks.get());
+    }
+
+    @Test
+    void failedGroupIsAppliedOneByOne() throws Exception {
+        CountDownLatch writerBlocked = blockWriter();
+        CompletableFuture<String> first = submit(pendingOccupancy -> "first");
+        CompletableFuture<String> failing = submit(pendingOccupancy -> {
+            throw new IllegalStateException("database is gone");
+        });
+        CompletableFuture<String> last = submit(pendingOccupancy -> "last");
+        awaitQueued(3);
+        writerBlocked.countDown();
+
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("last", last.get(5, TimeUnit.SECONDS));
+        CompletionException exception = assertThrows(CompletionException.class, failing::join);
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+        //the group and then the failing request on its own
+        assertEquals(2, transactionManager.rollbacks.get());
+        assertEquals(3, transactionManager.commits.get());
+    }
+
+    @Test
+    void requestNotAppliedInTimeIsDropped() throws Exception {
+        CountDownLatch writerBlocked = blockWriter();
+        AtomicBoolean applied = new AtomicBoolean();
+        CompletableFuture<Boolean> late = submit(pendingOccupancy -> applied.getAndSet(true));
+        CompletionException exception = assertThrows(CompletionException.class, late::join);
+        assertTrue(exception.getCause() instanceof ServiceUnavailableException);
+        writerBlocked.countDown();
+
+        assertEquals("next", submit(pendingOccupancy -> "next").get(5, TimeUnit.SECONDS));
+        assertFalse(applied.get());
+    }
+
+    @Test
+    void requestStartedByTheWriterIsAwaitedPastTheTimeout() throws Exception {
+        CompletableFuture<String> slow = submit(pendingOccupancy -> {
+            try {
+                //beyond the result timeout of 3 seconds
+                TimeUnit.SECONDS.sleep(4);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return "slow";
+        });
+
+        //committed, so the caller gets the result rather than a 503
+        assertEquals("slow", slow.get(10, TimeUnit.SECONDS));
+        assertEquals(1, transactionManager.commits.get());
+    }
+
+    @Test
+    void writerIsReplacedAfterAnError() throws Exception {
+        CompletableFuture<String> failing = submit(pendingOccupancy -> {
+            throw new AssertionError("writer broken");
+        });
+        CompletionException exception = assertThrows(CompletionException.class, failing::join);
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+        assertTrue(exception.getCause().getCause() instanceof AssertionError);
+
+        assertEquals("next", submit(pendingOccupancy -> "next").get(5, TimeUnit.SECONDS));
+        assertEquals(1, bookingSequencer.getRestartCount());
+    }
+
+    @Test
+    void releasedNightsCanBeClaimedByTheSameGroup() {
+        PendingOccupancy pendingOccupancy = new PendingOccupancy(occupancyIndex);
+        assertFalse(pendingOccupancy.isVacant(SITE, today.plusDays(4), today.plusDays(6)));
+        pendingOccupancy.release(SITE, today.plusDays(3), today.plusDays(5));
+        assertTrue(pendingOccupancy.isVacant(SITE, today.plusDays(4), today.plusDays(6)));
+        pendingOccupancy.claim(SITE, today.plusDays(5), today.plusDays(6));
+        assertFalse(pendingOccupancy.isVacant(SITE, today.plusDays(4), today.plusDays(6)));
+        assertTrue(pendingOccupancy.isVacant(SITE, today.plusDays(3), today.plusDays(5)));
+        assertTrue(pendingOccupancy.isVacant("B2", today.plusDays(4), today.plusDays(6)));
+    }
+
+    /**
+     * Keeps the writer busy until the returned latch is counted down, so the next requests end up in one group
+     */
+    private CountDownLatch blockWriter() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        submit(pendingOccupancy -> {
+            started.countDown();
+            try {
+                return blocked.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return blocked;
+    }
+
+    private void awaitQueued(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bookingSequencer.getQueueSize() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, bookingSequencer.getQueueSize());
+    }
+
+    private <T> CompletableFuture<T> submit(BookingSequencer.Command<T> command) {
+        return CompletableFuture.supplyAsync(() -> bookingSequencer.submit(command), executor);
+    }
+
+    private static class CountingTransactionManager extends AbstractPlatformTransactionManager {
+
+        private final AtomicInteger commits = new AtomicInteger();
+
+        private final AtomicInteger rollbacks = new AtomicInteger();
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            commits.incrementAndGet();
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rollbacks.incrementAndGet();
+        }
+    }
+}
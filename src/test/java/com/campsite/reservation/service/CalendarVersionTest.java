@@ -0,0 +1,52 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.event.OccupancyChangedEvent;
+import com.campsite.reservation.model.Campsite;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalendarVersionTest {
+
+    private static final String SITE = Campsite.DEFAULT_CODE;
+
+    private static final String OTHER_SITE = "B2";
+
+    @Test
+    void movesForTheCampsitesOfTheChange() {
+        CalendarVersion calendarVersion = new CalendarVersion();
+        long site = calendarVersion.get(SITE);
+        long otherSite = calendarVersion.get(OTHER_SITE);
+        assertTrue(site >= System.currentTimeMillis() - 60_000);
+
+        calendarVersion.onOccupancyChanged(changed(Set.of(SITE)));
+        assertEquals(site + 1, calendarVersion.get(SITE));
+        assertEquals(otherSite, calendarVersion.get(OTHER_SITE));
+
+        calendarVersion.onOccupancyChanged(changed(Set.of(SITE, OTHER_SITE)));
+        assertEquals(site + 2, calendarVersion.get(SITE));
+        assertEquals(otherSite + 1, calendarVersion.get(OTHER_SITE));
+    }
+
+    @Test
+    void versionsOfNodesAreToldApart() {
+        CalendarVersion node = new CalendarVersion();
+        CalendarVersion otherNode = new CalendarVersion();
+        assertNotEquals(node.getNode(), otherNode.getNode());
+
+        //applied by one node only so far
+        node.onOccupancyChanged(changed(Set.of(SITE)));
+        long version = otherNode.get(SITE);
+        otherNode.onOccupancyChanged(changed(Set.of(SITE)));
+        assertEquals(version + 1, otherNode.get(SITE));
+    }
+
+    private static OccupancyChangedEvent changed(Set<String> campsites) {
+        return new OccupancyChangedEvent(campsites, Collections.emptyList());
+    }
+}
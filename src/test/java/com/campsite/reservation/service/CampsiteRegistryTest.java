@@ -0,0 +1,73 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.repository.CampsiteRepository;
+import com.campsite.reservation.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CampsiteRegistryTest {
+
+    @Mock
+    private CampsiteRepository campsiteRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Campsite> stored = new ArrayList<>();
+
+    private CampsiteRegistry campsiteRegistry;
+
+    @BeforeEach
+    void setUp() {
+        stored.add(campsite(Campsite.DEFAULT_CODE));
+        when(campsiteRepository.findAll()).thenAnswer(invocation -> new ArrayList<>(stored));
+        campsiteRegistry = new CampsiteRegistry(campsiteRepository, reservationRepository, transactionManager);
+        campsiteRegistry.refresh();
+    }
+
+    @Test
+    void picksUpNewCampsites() {
+        stored.add(campsite("B2"));
+        assertEquals("B2", campsiteRegistry.resolve("B2"));
+        assertEquals("B2", campsiteRegistry.getReference("B2").getCode());
+        verify(campsiteRepository, times(2)).findAll();
+    }
+
+    @Test
+    void unknownCodesAreNotLookedUpAgain() {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(ObjectNotFoundException.class, () -> campsiteRegistry.resolve("Z9"));
+        }
+        verify(campsiteRepository, times(2)).findAll();
+
+        //until the campsites are refreshed
+        stored.add(campsite("Z9"));
+        campsiteRegistry.refresh();
+        assertEquals("Z9", campsiteRegistry.resolve("Z9"));
+    }
+
+    private static Campsite campsite(String code) {
+        Campsite campsite = new Campsite();
+        campsite.setCode(code);
+        return campsite;
+    }
+}
@@ -0,0 +1,139 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.exception.AccessDeniedException;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.model.UpdateReservationDTO;
+import com.campsite.reservation.model.User;
+import com.campsite.reservation.reference.BookingReferenceGenerator;
+import com.campsite.reservation.reference.SnowflakeBookingReferenceGenerator;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.campsite.reservation.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ExclusionConstraintReservationServiceTest {
+
+    private static final String CONFLICT = "reservation-conflict";
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private CampsiteRegistry campsiteRegistry;
+
+    @Spy
+    private BookingReferenceGenerator bookingReferenceGenerator = new SnowflakeBookingReferenceGenerator(0);
+
+    @InjectMocks
+    private ExclusionConstraintReservationService reservationService = new ExclusionConstraintReservationService();
+
+    private final LocalDate startDate = LocalDate.now().plusDays(2);
+
+    private final ReservationDTO reservationDTO = new ReservationDTO();
+
+    private final User user = new User();
+
+    @BeforeEach
+    void setUp() {
+        reservationDTO.setEmail("john@doe.com");
+        reservationDTO.setFullName("John Doe");
+        reservationDTO.setCheckInDate(startDate);
+        reservationDTO.setCheckoutDate(startDate.plusDays(2));
+        user.setEmail(reservationDTO.getEmail());
+        user.setFullName(reservationDTO.getFullName());
+    }
+
+    @Test
+    void overlappingStayIsAConflict() {
+        when(campsiteRegistry.resolve(null)).thenReturn(Campsite.DEFAULT_CODE);
+        when(userRepository.upsertUser(reservationDTO.getEmail(), reservationDTO.getFullName())).thenReturn(user);
+        when(reservationRepository.saveAndFlush(any())).thenThrow(violation("23P01"));
+
+        AccessDeniedException conflict = assertThrows(AccessDeniedException.class,
+                () -> reservationService.createReservation(reservationDTO));
+        assertEquals(CONFLICT, conflict.getErrorCode());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void sameStayOfABatchIsAConflict() {
+        when(campsiteRegistry.resolve(null)).thenReturn(Campsite.DEFAULT_CODE);
+        when(userRepository.upsertUser(reservationDTO.getEmail(), reservationDTO.getFullName())).thenReturn(user);
+        doThrow(violation("23505")).when(reservationRepository).flush();
+
+        AccessDeniedException conflict = assertThrows(AccessDeniedException.class,
+                () -> reservationService.createReservations(List.of(reservationDTO)));
+        assertEquals(CONFLICT, conflict.getErrorCode());
+    }
+
+    @Test
+    void modificationOntoBookedNightsIsAConflict() {
+        Campsite campsite = new Campsite();
+        campsite.setCode(Campsite.DEFAULT_CODE);
+        Reservation reservation = new Reservation();
+        reservation.setReservationId("ref");
+        reservation.setCampsite(campsite);
+        reservation.setArrivalDate(startDate);
+        reservation.setDepartureDate(startDate.plusDays(1));
+        reservation.setUser(user);
+        when(reservationRepository.findReservationByReservationId("ref")).thenReturn(Optional.of(reservation));
+        when(reservationRepository.saveAndFlush(any())).thenThrow(violation("23P01"));
+        UpdateReservationDTO updateReservationDTO = new UpdateReservationDTO();
+        updateReservationDTO.setBookingReferenceId("ref");
+        updateReservationDTO.setCheckInDate(startDate.plusDays(3));
+        updateReservationDTO.setCheckoutDate(startDate.plusDays(5));
+
+        AccessDeniedException conflict = assertThrows(AccessDeniedException.class,
+                () -> reservationService.modifyReservation(updateReservationDTO));
+        assertEquals(CONFLICT, conflict.getErrorCode());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void otherViolationsAreNotConflicts() {
+        when(campsiteRegistry.resolve(null)).thenReturn(Campsite.DEFAULT_CODE);
+        when(userRepository.upsertUser(reservationDTO.getEmail(), reservationDTO.getFullName())).thenReturn(user);
+        //not null violation
+        when(reservationRepository.saveAndFlush(any())).thenThrow(violation("23502"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> reservationService.createReservation(reservationDTO));
+    }
+
+    /**
+     * @return the violation Spring translates the driver exception into, the SQL exception a few causes down
+     */
+    private static DataIntegrityViolationException violation(String sqlState) {
+        SQLException sqlException = new SQLException("constraint violated", sqlState);
+        return new DataIntegrityViolationException("could not execute statement",
+                new RuntimeException("constraint violation", sqlException));
+    }
+}
@@ -0,0 +1,115 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.exception.ServiceUnavailableException;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.DayInventory;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.model.User;
+import com.campsite.reservation.reference.BookingReferenceGenerator;
+import com.campsite.reservation.reference.SnowflakeBookingReferenceGenerator;
+import com.campsite.reservation.repository.DayInventoryRepository;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.campsite.reservation.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryReservationServiceTest {
+
+    @Mock
+    private DayInventoryRepository dayInventoryRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private CampsiteRegistry campsiteRegistry;
+
+    @Spy
+    private BookingReferenceGenerator bookingReferenceGenerator = new SnowflakeBookingReferenceGenerator(0);
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+
+    @Spy
+    private CampsiteProperties campsiteProperties = new CampsiteProperties();
+
+    @InjectMocks
+    private InventoryReservationService reservationService = new InventoryReservationService();
+
+    private final LocalDate startDate = LocalDate.now().plusDays(2);
+
+    private final ReservationDTO reservationDTO = new ReservationDTO();
+
+    @BeforeEach
+    void setUp() {
+        campsiteProperties.getBooking().getInventory().setMaxAttempts(3);
+        campsiteProperties.getBooking().getInventory().setInitialBackoff(Duration.ofMillis(1));
+        reservationDTO.setEmail("john@doe.com");
+        reservationDTO.setFullName("John Doe");
+        reservationDTO.setCheckInDate(startDate);
+        reservationDTO.setCheckoutDate(startDate.plusDays(2));
+        when(campsiteRegistry.resolve(null)).thenReturn(Campsite.DEFAULT_CODE);
+    }
+
+    @Test
+    void bookingIsRetriedWhenANightWasClaimedFirst() {
+        when(dayInventoryRepository.claimDays(Campsite.DEFAULT_CODE, startDate, startDate.plusDays(2)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(DayInventory.class, 1L))
+                .thenReturn(List.of(day(startDate), day(startDate.plusDays(1))));
+        when(userRepository.upsertUser(any(), any())).thenReturn(new User());
+
+        Reservation reservation = reservationService.createReservation(reservationDTO);
+
+        assertNotNull(reservation.getReservationId());
+        assertEquals(1, reservationService.getRetryCount());
+        verify(dayInventoryRepository, times(2)).claimDays(Campsite.DEFAULT_CODE, startDate, startDate.plusDays(2));
+    }
+
+    @Test
+    void bookingIsRejectedOnceTheAttemptsAreExhausted() {
+        when(dayInventoryRepository.claimDays(Campsite.DEFAULT_CODE, startDate, startDate.plusDays(2)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(DayInventory.class, 1L));
+
+        assertThrows(ServiceUnavailableException.class, () -> reservationService.createReservation(reservationDTO));
+
+        assertEquals(2, reservationService.getRetryCount());
+        assertEquals(1, reservationService.getExhaustedCount());
+    }
+
+    private static DayInventory day(LocalDate date) {
+        DayInventory day = new DayInventory();
+        day.setStayDate(date);
+        return day;
+    }
+}
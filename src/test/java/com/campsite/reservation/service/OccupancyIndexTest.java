@@ -0,0 +1,212 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.event.OccupancyChangedEvent;
+import com.campsite.reservation.event.ReservationChangedEvent;
+import com.campsite.reservation.model.AvailableDate;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservedStay;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.topic.ITopic;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OccupancyIndexTest {
+
+    private static final String SITE = Campsite.DEFAULT_CODE;
+
+    private static final String OTHER_SITE = "B2";
+
+    private final LocalDate today = LocalDate.now();
+
+    private static HazelcastInstance hazelcastInstance;
+
+    private OccupancyIndex occupancyIndex;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private OccupancyIndex node;
+
+    @InjectMocks
+    private OccupancyIndex otherNode;
+
+    @BeforeAll
+    static void before() {
+        hazelcastInstance = TestUtils.startHazelCastEmbedded();
+    }
+
+    @AfterAll
+    static void after() {
+        hazelcastInstance.shutdown();
+    }
+
+    @BeforeEach
+    void setUp() {
+        occupancyIndex = new OccupancyIndex();
+        occupancyIndex.load(today, Arrays.asList(
+                reservation(3, 5),
+                reservation(5, 6),
+                reservation(8, 10)));
+    }
+
+    @Test
+    void notLoaded() {
+        assertFalse(new OccupancyIndex().covers(today.plusDays(1)));
+        assertTrue(occupancyIndex.covers(today.plusDays(1)));
+        assertFalse(occupancyIndex.covers(today.minusDays(1)));
+    }
+
+    @Test
+    void isVacant() {
+        assertTrue(occupancyIndex.isVacant(SITE, today.plusDays(1), today.plusDays(3)));
+        assertFalse(occupancyIndex.isVacant(SITE, today.plusDays(2), today.plusDays(4)));
+        assertTrue(occupancyIndex.isVacant(SITE, today.plusDays(6), today.plusDays(8)));
+        assertFalse(occupancyIndex.isVacant(SITE, today.plusDays(7), today.plusDays(9)));
+        assertTrue(occupancyIndex.isVacant(SITE, today.plusDays(10), today.plusDays(13)));
+    }
+
+    @Test
+    void availableDates() {
+        List<AvailableDate> result = occupancyIndex.availableDates(SITE, today.plusDays(1), today.plusDays(12));
+        assertEquals(3, result.size());
+        assertRange(result.get(0), 1, 3);
+        assertRange(result.get(1), 6, 8);
+        assertRange(result.get(2), 10, 12);
+
+        assertTrue(occupancyIndex.availableDates(SITE, today.plusDays(3), today.plusDays(6)).isEmpty());
+    }
+
+    @Test
+    void appliesChanges() {
+        occupancyIndex.onReservationChanged(ReservationChangedEvent.created("a", SITE, today.plusDays(1), today.plusDays(3)));
+        assertFalse(occupancyIndex.isVacant(SITE, today.plusDays(1), today.plusDays(2)));
+
+        occupancyIndex.onReservationChanged(ReservationChangedEvent.modified("a", SITE, today.plusDays(1), today.plusDays(3),
+                SITE, today.plusDays(11), today.plusDays(12)));
+        assertTrue(occupancyIndex.isVacant(SITE, today.plusDays(1), today.plusDays(3)));
+        assertFalse(occupancyIndex.isVacant(SITE, today.plusDays(11), today.plusDays(12)));
+
+        occupancyIndex.onReservationChanged(ReservationChangedEvent.cancelled("a", SITE, today.plusDays(11), today.plusDays(12)));
+        assertTrue(occupancyIndex.isVacant(SITE, today.plusDays(10), today.plusDays(13)));
+    }
+
+    @Test
+    void replaysChangesReceivedWhileLoading() {
+        OccupancyIndex index = new OccupancyIndex();
+        index.onReservationChanged(ReservationChangedEvent.created("a", SITE, today.plusDays(1), today.plusDays(2)));
+        index.onReservationChanged(ReservationChangedEvent.cancelled("b", SITE, today.plusDays(4), today.plusDays(5)));
+        index.load(today, Collections.singletonList(reservation(4, 5)));
+        assertFalse(index.isVacant(SITE, today.plusDays(1), today.plusDays(2)));
+        assertTrue(index.isVacant(SITE, today.plusDays(4), today.plusDays(5)));
+    }
+
+    @Test
+    void partitionedByCampsite() {
+        occupancyIndex.onReservationChanged(ReservationChangedEvent.created("b", OTHER_SITE, today.plusDays(1), today.plusDays(3)));
+        assertTrue(occupancyIndex.isVacant(SITE, today.plusDays(1), today.plusDays(3)));
+        assertFalse(occupancyIndex.isVacant(OTHER_SITE, today.plusDays(2), today.plusDays(3)));
+        assertTrue(occupancyIndex.isVacant(OTHER_SITE, today.plusDays(3), today.plusDays(6)));
+        assertEquals(Arrays.asList(OTHER_SITE, "C3"),
+                occupancyIndex.vacantCampsites(Arrays.asList(SITE, OTHER_SITE, "C3"), today.plusDays(4), today.plusDays(6)));
+        assertEquals(Arrays.asList(SITE, "C3"),
+                occupancyIndex.vacantCampsites(Arrays.asList(SITE, OTHER_SITE, "C3"), today.plusDays(1), today.plusDays(2)));
+
+        List<AvailableDate> result = occupancyIndex.availableDates("C3", today.plusDays(1), today.plusDays(4));
+        assertEquals(1, result.size());
+        assertRange(result.get(0), 1, 4);
+
+        occupancyIndex.onReservationChanged(ReservationChangedEvent.modified("b", OTHER_SITE, today.plusDays(1), today.plusDays(3),
+                SITE, today.plusDays(1), today.plusDays(3)));
+        assertTrue(occupancyIndex.isVacant(OTHER_SITE, today.plusDays(1), today.plusDays(3)));
+        assertFalse(occupancyIndex.isVacant(SITE, today.plusDays(1), today.plusDays(2)));
+    }
+
+    @Test
+    void appliesChangesOfOtherNodes() {
+        connect(false);
+        try {
+            ReservationChangedEvent created = ReservationChangedEvent.created("a", SITE, today.plusDays(2), today.plusDays(4));
+            node.onReservationChanged(created);
+            node.forward(created);
+            //once by each node
+            verify(eventPublisher, timeout(5000).times(2)).publishEvent(any(OccupancyChangedEvent.class));
+            assertFalse(otherNode.isVacant(SITE, today.plusDays(3), today.plusDays(4)));
+            assertTrue(otherNode.isVacant(OTHER_SITE, today.plusDays(2), today.plusDays(4)));
+        } finally {
+            node.stop();
+            otherNode.stop();
+        }
+    }
+
+    @Test
+    void readsCampsitesChangedOnOtherNodesAgain() {
+        //the nights were booked again by a third node, whose change has not arrived yet
+        when(reservationRepository.retrieveStaysDepartingAfter(eq(SITE), any()))
+                .thenReturn(Collections.singletonList(new ReservedStay(today.plusDays(2), today.plusDays(4))));
+        connect(true);
+        try {
+            ReservationChangedEvent cancelled = ReservationChangedEvent.cancelled("a", SITE, today.plusDays(2), today.plusDays(4));
+            node.forward(cancelled);
+            //the cancellation on each node, then the nights read again
+            verify(eventPublisher, timeout(5000).times(3)).publishEvent(any(OccupancyChangedEvent.class));
+            assertFalse(otherNode.isVacant(SITE, today.plusDays(2), today.plusDays(3)));
+            assertTrue(otherNode.isVacant(SITE, today.plusDays(4), today.plusDays(6)));
+        } finally {
+            node.stop();
+            otherNode.stop();
+        }
+    }
+
+    private void connect(boolean refreshFromRepository) {
+        ITopic<OccupancyIndex.RemoteChange> topic = hazelcastInstance.getTopic("occupancy-test-" + UUID.randomUUID());
+        node.load(today, Collections.emptyList());
+        otherNode.load(today, Collections.emptyList());
+        node.connect(topic, refreshFromRepository);
+        otherNode.connect(topic, refreshFromRepository);
+    }
+
+    private Reservation reservation(int arrival, int departure) {
+        Campsite campsite = new Campsite();
+        campsite.setCode(SITE);
+        Reservation reservation = new Reservation();
+        reservation.setCampsite(campsite);
+        reservation.setArrivalDate(today.plusDays(arrival));
+        reservation.setDepartureDate(today.plusDays(departure));
+        return reservation;
+    }
+
+    private void assertRange(AvailableDate availableDate, int start, int end) {
+        assertEquals(today.plusDays(start), availableDate.getStartDate());
+        assertEquals(today.plusDays(end), availableDate.getEndDate());
+    }
+}
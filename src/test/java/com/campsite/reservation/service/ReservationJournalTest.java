@@ -0,0 +1,199 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.event.ReservationChangedEvent;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.OccupancySnapshot;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationJournalEntry;
+import com.campsite.reservation.repository.OccupancySnapshotRepository;
+import com.campsite.reservation.repository.ReservationJournalRepository;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.cp.lock.FencedLock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationJournalTest {
+
+    private static final String SITE = Campsite.DEFAULT_CODE;
+
+    @Mock
+    private ReservationJournalRepository journalRepository;
+
+    @Mock
+    private OccupancySnapshotRepository snapshotRepository;
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+
+    @Spy
+    private CampsiteProperties campsiteProperties = new CampsiteProperties();
+
+    @Mock
+    private ObjectProvider<HazelcastInstance> hazelcastInstance;
+
+    @InjectMocks
+    private ReservationJournal reservationJournal = new ReservationJournal();
+
+    private final LocalDate today = LocalDate.now();
+
+    @Test
+    void firstSnapshotIsTakenFromTheReservations() {
+        Reservation reservation = new Reservation();
+        Campsite campsite = new Campsite();
+        campsite.setCode(SITE);
+        reservation.setCampsite(campsite);
+        reservation.setArrivalDate(today.plusDays(2));
+        reservation.setDepartureDate(today.plusDays(4));
+        when(snapshotRepository.findFirstByOrderByLastEntryIdDescIdDesc()).thenReturn(Optional.empty());
+        //entry 2 is the first recent one
+        when(journalRepository.retrieveFirstEntryIdSince(any())).thenReturn(2L);
+        when(reservationRepository.retrieveReservationsDepartingAfter(today)).thenReturn(List.of(reservation));
+        when(snapshotRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OccupancySnapshot snapshot = reservationJournal.snapshot();
+
+        //the recent entry may not be in the reservations yet, it is replayed on restore
+        assertEquals(1, snapshot.getLastEntryId());
+        assertEquals(today, snapshot.getOriginDate());
+        assertEquals(Map.of(SITE, nights(2, 3)), snapshot.bookedNights());
+        verify(snapshotRepository).deleteSnapshotsBefore(snapshot.getId());
+        //the journal is neither read nor pruned
+        verify(journalRepository, never()).retrieveEntriesAfter(anyLong());
+        verify(journalRepository, never()).deleteEntriesUpTo(anyLong());
+    }
+
+    @Test
+    void firstSnapshotWithAllEntriesSettled() {
+        when(snapshotRepository.findFirstByOrderByLastEntryIdDescIdDesc()).thenReturn(Optional.empty());
+        //no entry recorded since the settle time
+        when(journalRepository.retrieveFirstEntryIdSince(any())).thenReturn(null);
+        when(journalRepository.retrieveLastEntryId()).thenReturn(7L);
+        when(snapshotRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertEquals(7, reservationJournal.snapshot().getLastEntryId());
+    }
+
+    @Test
+    void snapshotFoldsSettledEntriesAndRestoreReplaysTheRest() {
+        //taken yesterday, the stay from today + 2 to today + 4 starts 3 nights after its origin
+        OccupancySnapshot previous = OccupancySnapshot.of(today.minusDays(1), 4, Map.of(SITE, nights(3, 4)));
+        List<ReservationJournalEntry> entries = List.of(
+                entry(5, ReservationChangedEvent.modified("moved", SITE, today.plusDays(2), today.plusDays(4),
+                        SITE, today.plusDays(8), today.plusDays(9)), 10),
+                entry(6, ReservationChangedEvent.created("recent", SITE, today.plusDays(2), today.plusDays(3)), 0),
+                entry(7, ReservationChangedEvent.cancelled("moved", SITE, today.plusDays(8), today.plusDays(9)), 10));
+        when(snapshotRepository.findFirstByOrderByLastEntryIdDescIdDesc()).thenReturn(Optional.of(previous));
+        when(journalRepository.retrieveEntriesAfter(4)).thenReturn(entries);
+        when(snapshotRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OccupancySnapshot snapshot = reservationJournal.snapshot();
+
+        //entries after the first recent one are left for the next snapshot
+        assertEquals(5, snapshot.getLastEntryId());
+        assertEquals(today, snapshot.getOriginDate());
+        assertEquals(Map.of(SITE, nights(8)), snapshot.bookedNights());
+        //the entries folded into the previous snapshot
+        verify(journalRepository).deleteEntriesUpTo(4);
+
+        when(snapshotRepository.findFirstByOrderByLastEntryIdDescIdDesc()).thenReturn(Optional.of(snapshot));
+        when(journalRepository.retrieveEntriesAfter(5)).thenReturn(entries.subList(1, 3));
+        OccupancyIndex occupancyIndex = new OccupancyIndex();
+
+        assertTrue(reservationJournal.restore(occupancyIndex));
+
+        assertTrue(occupancyIndex.covers(today));
+        assertFalse(occupancyIndex.isVacant(SITE, today.plusDays(2), today.plusDays(3)));
+        assertTrue(occupancyIndex.isVacant(SITE, today.plusDays(3), today.plusDays(10)));
+    }
+
+    @Test
+    void nothingToRestoreBeforeTheFirstSnapshot() {
+        when(snapshotRepository.findFirstByOrderByLastEntryIdDescIdDesc()).thenReturn(Optional.empty());
+        OccupancyIndex occupancyIndex = new OccupancyIndex();
+
+        assertFalse(reservationJournal.restore(occupancyIndex));
+        assertFalse(occupancyIndex.covers(today));
+    }
+
+    @Test
+    void skipsTheSnapshotTakenByAnotherNode() throws Exception {
+        HazelcastInstance instance = TestUtils.startHazelCastEmbedded();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            when(hazelcastInstance.getIfAvailable()).thenReturn(instance);
+            FencedLock lock = instance.getCPSubsystem().getLock(ReservationJournal.SNAPSHOT_LOCK_NAME);
+            CompletableFuture<Void> otherNode = CompletableFuture.runAsync(() -> {
+                lock.lock();
+                try {
+                    locked.countDown();
+                    done.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    lock.unlock();
+                }
+            });
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            reservationJournal.takeSnapshot();
+
+            verifyNoInteractions(snapshotRepository, journalRepository);
+            done.countDown();
+            otherNode.get(5, TimeUnit.SECONDS);
+        } finally {
+            done.countDown();
+            instance.shutdown();
+        }
+    }
+
+    private static ReservationJournalEntry entry(long id, ReservationChangedEvent event, int minutesAgo) {
+        ReservationJournalEntry entry = ReservationJournalEntry.of(event);
+        entry.setId(id);
+        entry.setRecordedAt(OffsetDateTime.now().minusMinutes(minutesAgo));
+        return entry;
+    }
+
+    private static BitSet nights(int... indexes) {
+        BitSet nights = new BitSet();
+        for (int index : indexes) {
+            nights.set(index);
+        }
+        return nights;
+    }
+}
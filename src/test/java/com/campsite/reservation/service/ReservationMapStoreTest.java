@@ -0,0 +1,116 @@
+package com.campsite.reservation.service;
+
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationRecord;
+import com.campsite.reservation.model.User;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.campsite.reservation.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationMapStoreTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private CampsiteRegistry campsiteRegistry;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+
+    @InjectMocks
+    private ReservationMapStore reservationMapStore = new ReservationMapStore();
+
+    private final LocalDate startDate = LocalDate.now().plusDays(2);
+
+    private final Campsite campsite = campsite(Campsite.DEFAULT_CODE);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void movedReservationsAreFlushedBeforeNewOnesAreInserted() {
+        Reservation existing = new Reservation();
+        existing.setReservationId("moved");
+        existing.setCampsite(campsite);
+        existing.setArrivalDate(startDate);
+        existing.setDepartureDate(startDate.plusDays(2));
+        User user = new User();
+        when(reservationRepository.findReservationsByReservationIdIn(any())).thenReturn(List.of(existing));
+        when(userRepository.upsertUser("john@doe.com", "John Doe")).thenReturn(user);
+        Map<String, ReservationRecord> batch = new LinkedHashMap<>();
+        batch.put("moved", new ReservationRecord("moved", Campsite.DEFAULT_CODE, startDate.plusDays(2), startDate.plusDays(3),
+                "jane@doe.com", "Jane Doe"));
+        batch.put("first", new ReservationRecord("first", Campsite.DEFAULT_CODE, startDate, startDate.plusDays(1),
+                "john@doe.com", "John Doe"));
+        batch.put("second", new ReservationRecord("second", Campsite.DEFAULT_CODE, startDate.plusDays(1), startDate.plusDays(2),
+                "john@doe.com", "John Doe"));
+        when(campsiteRegistry.getReference(Campsite.DEFAULT_CODE)).thenReturn(campsite);
+
+        reservationMapStore.storeAll(batch);
+
+        assertEquals(startDate.plusDays(2), existing.getArrivalDate());
+        assertEquals(startDate.plusDays(3), existing.getDepartureDate());
+        ArgumentCaptor<List<Reservation>> inserted = ArgumentCaptor.forClass(List.class);
+        InOrder order = inOrder(reservationRepository);
+        order.verify(reservationRepository).flush();
+        order.verify(reservationRepository).saveAll(inserted.capture());
+        order.verify(reservationRepository).flush();
+        assertEquals(2, inserted.getValue().size());
+        assertSame(user, inserted.getValue().get(0).getUser());
+        assertSame(campsite, inserted.getValue().get(1).getCampsite());
+        //the user of both new reservations is upserted once
+        verify(userRepository, times(1)).upsertUser(any(), any());
+    }
+
+    @Test
+    void reservationIsLoadedWithItsUser() {
+        Reservation reservation = new Reservation();
+        reservation.setReservationId("loaded");
+        reservation.setCampsite(campsite);
+        reservation.setArrivalDate(startDate);
+        reservation.setDepartureDate(startDate.plusDays(1));
+        User user = new User();
+        user.setEmail("john@doe.com");
+        user.setFullName("John Doe");
+        reservation.setUser(user);
+        when(reservationRepository.findReservationsByReservationIdIn(List.of("loaded", "missing"))).thenReturn(List.of(reservation));
+
+        Map<String, ReservationRecord> loaded = reservationMapStore.loadAll(List.of("loaded", "missing"));
+
+        assertEquals(Map.of("loaded", new ReservationRecord("loaded", Campsite.DEFAULT_CODE, startDate,
+                startDate.plusDays(1), "john@doe.com", "John Doe")), loaded);
+    }
+
+    private static Campsite campsite(String code) {
+        Campsite campsite = new Campsite();
+        campsite.setCode(code);
+        return campsite;
+    }
+}
@@ -11,6 +11,7 @@ import com.google.code.tempusfugit.concurrency.ConcurrentRule;
 import com.google.code.tempusfugit.concurrency.RepeatingRule;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.Hibernate;
 import org.junit.Rule;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -167,6 +168,53 @@ class ReservationServiceImplTest {
         makeReservation( email);
     }
 
+    @Test
+    void makeBatchReservation() {
+        String email = RandomStringUtils.randomAlphanumeric(7).concat("@gg.com");
+        LocalDate startDate = LocalDate.now().plusDays(15);
+        List<Reservation> result = reservationService.createReservations(List.of(
+                reservationDTO(email, startDate.plusDays(2), startDate.plusDays(3)),
+                reservationDTO(email, startDate, startDate.plusDays(2))));
+        assertEquals(2, result.size());
+        assertEquals(startDate, result.get(0).getArrivalDate());
+        assertEquals(startDate.plusDays(2), result.get(1).getArrivalDate());
+        assertSame(result.get(0).getUser(), result.get(1).getUser());
+        assertFalse(reservationService.retrieveAvailableDates(startDate, startDate.plusDays(3)).stream()
+                .anyMatch(availableDate -> availableDate.getStartDate().isBefore(startDate.plusDays(3))));
+    }
+
+    @Test
+    void makeBatchReservationOverlappingWithinBatch() {
+        String email = RandomStringUtils.randomAlphanumeric(7).concat("@gg.com");
+        LocalDate startDate = LocalDate.now().plusDays(20);
+        Assertions.assertThrows(AccessDeniedException.class, () -> {
+            reservationService.createReservations(List.of(
+                    reservationDTO(email, startDate, startDate.plusDays(2)),
+                    reservationDTO(email, startDate.plusDays(1), startDate.plusDays(3))));
+        });
+        assertEquals(1, reservationService.retrieveAvailableDates(startDate, startDate.plusDays(3)).size());
+    }
+
+    @Test
+    void returningCamperIsResolvedByEmail() {
+        String email = RandomStringUtils.randomAlphanumeric(7).concat("@gg.com");
+        LocalDate startDate = LocalDate.now().plusDays(25);
+        Reservation first = reservationService.createReservation(reservationDTO(email, startDate, startDate.plusDays(1)));
+        Reservation second = reservationService.createReservation(reservationDTO(email, startDate.plusDays(1), startDate.plusDays(2)));
+        assertEquals(first.getUser().getId(), second.getUser().getId());
+        assertEquals("John Doe", second.getUser().getFullName());
+        assertFalse(Hibernate.isInitialized(second.getUser().getReservations()));
+    }
+
+    private ReservationDTO reservationDTO(String email, LocalDate startDate, LocalDate endDate) {
+        ReservationDTO reservationDTO = new ReservationDTO();
+        reservationDTO.setEmail(email);
+        reservationDTO.setFullName("John Doe");
+        reservationDTO.setCheckInDate(startDate);
+        reservationDTO.setCheckoutDate(endDate);
+        return reservationDTO;
+    }
+
     /**
      * Make reservations with unique email
      * @param email the unique email address
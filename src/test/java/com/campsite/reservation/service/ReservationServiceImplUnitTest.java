@@ -1,9 +1,16 @@
 package com.campsite.reservation.service;
 
 import com.campsite.reservation.exception.InvalidFieldException;
+import com.campsite.reservation.lock.BookingLockManager;
+import com.campsite.reservation.lock.LocalBookingLockManager;
 import com.campsite.reservation.model.AvailableDate;
+import com.campsite.reservation.model.Campsite;
 import com.campsite.reservation.model.Reservation;
 import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.model.ReservedStay;
+import com.campsite.reservation.model.User;
+import com.campsite.reservation.reference.BookingReferenceGenerator;
+import com.campsite.reservation.reference.SnowflakeBookingReferenceGenerator;
 import com.campsite.reservation.repository.ReservationRepository;
 import com.campsite.reservation.repository.UserRepository;
 import org.junit.jupiter.api.Assertions;
@@ -11,18 +18,25 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -35,6 +49,27 @@ class ReservationServiceImplUnitTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private OccupancyIndex occupancyIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private BookingLockManager bookingLockManager = new LocalBookingLockManager();
+
+    @Spy
+    private AvailabilityCache availabilityCache = new AvailabilityCache();
+
+    @Mock
+    private CampsiteRegistry campsiteRegistry;
+
+    @Spy
+    private BookingReferenceGenerator bookingReferenceGenerator = new SnowflakeBookingReferenceGenerator(0);
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private ReservationService reservationService = new ReservationServiceImpl();
 
@@ -47,9 +82,13 @@ class ReservationServiceImplUnitTest {
         reservationDTO.setFullName("John Doe");
         reservationDTO.setCheckInDate(startDate);
         reservationDTO.setCheckoutDate(endDate);
-        when(reservationRepository.retrieveReservationForDates(any(), any())).thenReturn(
+        when(reservationRepository.retrieveStaysForDates(any(), any(), any())).thenReturn(
                 Collections.emptyList());
-        when(userRepository.findUserByEmail(reservationDTO.getEmail())).thenReturn(Optional.empty());
+        User user = new User();
+        user.setEmail(reservationDTO.getEmail());
+        user.setFullName(reservationDTO.getFullName());
+        when(userRepository.upsertUser(reservationDTO.getEmail(), reservationDTO.getFullName())).thenReturn(user);
+        when(campsiteRegistry.resolve(null)).thenReturn(Campsite.DEFAULT_CODE);
         Reservation result =  reservationService.createReservation(reservationDTO);
         assertNotNull(result.getReservationId());
         assertEquals(startDate, result.getArrivalDate());
@@ -62,33 +101,23 @@ class ReservationServiceImplUnitTest {
     void isAvailableSpots() {
 
         //given reserved spaces
-        Reservation reservation = new Reservation();
-        reservation.setArrivalDate(LocalDate.now().plusDays(3));
-        reservation.setDepartureDate(LocalDate.now().plusDays(5));
+        ReservedStay reservation = new ReservedStay(LocalDate.now().plusDays(3), LocalDate.now().plusDays(5));
 
-        Reservation reservation2 = new Reservation();
-        reservation2.setArrivalDate(LocalDate.now().plusDays(5));
-        reservation2.setDepartureDate(LocalDate.now().plusDays(6));
+        ReservedStay reservation2 = new ReservedStay(LocalDate.now().plusDays(5), LocalDate.now().plusDays(6));
 
-        Reservation reservation3 = new Reservation();
-        reservation3.setArrivalDate(LocalDate.now().plusDays(8));
-        reservation3.setDepartureDate(LocalDate.now().plusDays(10));
+        ReservedStay reservation3 = new ReservedStay(LocalDate.now().plusDays(8), LocalDate.now().plusDays(10));
 
-        Reservation reservation4 = new Reservation();
-        reservation4.setArrivalDate(LocalDate.now().plusDays(13));
-        reservation4.setDepartureDate(LocalDate.now().plusDays(15));
+        ReservedStay reservation4 = new ReservedStay(LocalDate.now().plusDays(13), LocalDate.now().plusDays(15));
 
-        Reservation reservation5 = new Reservation();
-        reservation5.setArrivalDate(LocalDate.now().plusDays(25));
-        reservation5.setDepartureDate(LocalDate.now().plusDays(28));
+        ReservedStay reservation5 = new ReservedStay(LocalDate.now().plusDays(25), LocalDate.now().plusDays(28));
 
-        List<Reservation> reservedDays = Arrays.asList(reservation, reservation2, reservation3, reservation4, reservation5);
+        List<ReservedStay> reservedDays = Arrays.asList(reservation, reservation2, reservation3, reservation4, reservation5);
 
 
         //when requested is before any bookings
         LocalDate startDate = LocalDate.now().plusDays(2);
         LocalDate endDate = LocalDate.now().plusDays(3);
-        when(reservationRepository.retrieveReservationForDates(any(), any())).thenReturn(
+        when(reservationRepository.retrieveStaysForDates(any(), any(), any())).thenReturn(
                 reservedDays);
         List<AvailableDate> result = reservationService.retrieveAvailableDates(startDate, endDate);
         assertEquals(1, result.size());
@@ -99,7 +128,7 @@ class ReservationServiceImplUnitTest {
         //when requested dates is on reserved bookings
         startDate = LocalDate.now().plusDays(3);
         endDate = LocalDate.now().plusDays(5);
-        when(reservationRepository.retrieveReservationForDates(any(), any())).thenReturn(
+        when(reservationRepository.retrieveStaysForDates(any(), any(), any())).thenReturn(
                 reservedDays);
         result = reservationService.retrieveAvailableDates(startDate, endDate);
         assertEquals(0, result.size());
@@ -107,7 +136,7 @@ class ReservationServiceImplUnitTest {
         //when requested dates is between bookings
         startDate = LocalDate.now().plusDays(6);
         endDate = LocalDate.now().plusDays(8);
-        when(reservationRepository.retrieveReservationForDates(any(), any())).thenReturn(
+        when(reservationRepository.retrieveStaysForDates(any(), any(), any())).thenReturn(
                 reservedDays);
         result = reservationService.retrieveAvailableDates(startDate, endDate);
         assertEquals(1, result.size());
@@ -118,7 +147,7 @@ class ReservationServiceImplUnitTest {
 
         startDate = LocalDate.now().plusDays(8);
         endDate = LocalDate.now().plusDays(18);
-        when(reservationRepository.retrieveReservationForDates(any(), any())).thenReturn(
+        when(reservationRepository.retrieveStaysForDates(any(), any(), any())).thenReturn(
                 reservedDays);
         result = reservationService.retrieveAvailableDates(startDate, endDate);
         assertEquals(1, result.size());
@@ -128,7 +157,7 @@ class ReservationServiceImplUnitTest {
 
         startDate = LocalDate.now().plusDays(6);
         endDate = LocalDate.now().plusDays(13);
-        when(reservationRepository.retrieveReservationForDates(any(), any())).thenReturn(
+        when(reservationRepository.retrieveStaysForDates(any(), any(), any())).thenReturn(
                 reservedDays);
         result = reservationService.retrieveAvailableDates(startDate, endDate);
         assertEquals(2, result.size());
@@ -138,7 +167,7 @@ class ReservationServiceImplUnitTest {
         // when check is at the end of reserved space
         startDate = LocalDate.now().plusDays(28);
         endDate = LocalDate.now().plusDays(30);
-        when(reservationRepository.retrieveReservationForDates(any(), any())).thenReturn(
+        when(reservationRepository.retrieveStaysForDates(any(), any(), any())).thenReturn(
                 reservedDays);
         result = reservationService.retrieveAvailableDates(startDate, endDate);
         assertEquals(1, result.size());
@@ -164,4 +193,34 @@ class ReservationServiceImplUnitTest {
             reservationService.retrieveAvailableDates(startDate, endDate);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void availableCampsitesWithoutDates() {
+        LocalDate endDate = LocalDate.now().plusDays(4);
+        Assertions.assertThrows(InvalidFieldException.class, () -> {
+            reservationService.retrieveAvailableCampsites(null, endDate);
+        });
+        Assertions.assertThrows(InvalidFieldException.class, () -> {
+            reservationService.retrieveAvailableCampsites(endDate, null);
+        });
+    }
+
+    @Test
+    void lookAheadReachesTheDepartureOfStaysNearTheHorizon() {
+        LocalDate today = LocalDate.now();
+        when(reservationRepository.retrieveStaysForDates(any(), any(), any())).thenReturn(Collections.emptyList());
+        reservationService.retrieveAvailableDates(today.plusDays(29), today.plusDays(31));
+        verify(reservationRepository).retrieveStaysForDates(any(), eq(today), eq(today.plusDays(31)));
+    }
+
+    @Test
+    void stayStartingBeforeTheFreeNightsIsNotAvailable() {
+        LocalDate today = LocalDate.now();
+        //the stay overlapping the requested dates, as read by the repository
+        when(reservationRepository.retrieveStaysForDates(any(), any(), any())).thenReturn(
+                Collections.singletonList(new ReservedStay(today.plusDays(3), today.plusDays(5))));
+        ReservationServiceImpl service = (ReservationServiceImpl) reservationService;
+        assertFalse(service.isAvailableSpotInRepository(Campsite.DEFAULT_CODE, today.plusDays(4), today.plusDays(6)));
+        assertTrue(service.isAvailableSpotInRepository(Campsite.DEFAULT_CODE, today.plusDays(5), today.plusDays(6)));
+    }
+}
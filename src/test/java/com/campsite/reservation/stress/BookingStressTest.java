@@ -0,0 +1,245 @@
+package com.campsite.reservation.stress;
+
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.exception.AccessDeniedException;
+import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.exception.ServiceUnavailableException;
+import com.campsite.reservation.lock.BookingLockManager;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.model.UpdateReservationDTO;
+import com.campsite.reservation.repository.ReservationRepository;
+import com.campsite.reservation.service.ReservationService;
+import com.campsite.reservation.service.WriteBehindReservationService;
+import lombok.extern.slf4j.Slf4j;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Fires concurrent create, modify and cancel calls at the service and checks that no two reservations overlap
+ * afterwards. Excluded from the default build, run it with: mvn -Pstress test
+ * <p>
+ * The load can be tuned with -Dstress.threads and -Dstress.operations.
+ */
+@Slf4j
+@Tag("stress")
+@SpringBootTest
+@ActiveProfiles("test")
+class BookingStressTest {
+
+    private static final int THREADS = Integer.getInteger("stress.threads", 32);
+
+    private static final int OPERATIONS = Integer.getInteger("stress.operations", 3000);
+
+    private enum OUTCOME {
+        BOOKED,
+        MODIFIED,
+        CANCELLED,
+        CONFLICT,
+        NOT_FOUND,
+        UNAVAILABLE,
+        DUPLICATE_DATES,
+        CONCURRENT_UPDATE,
+        ERROR,
+    }
+
+    @Resource
+    private ReservationService reservationService;
+
+    @Resource
+    private ReservationRepository reservationRepository;
+
+    @Resource
+    private BookingLockManager bookingLockManager;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    private static HazelcastInstance hazelcastInstance;
+
+    private final ConcurrentLinkedQueue<String> bookedReferences = new ConcurrentLinkedQueue<>();
+
+    private final Map<OUTCOME, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    @BeforeAll
+    static void before() {
+        hazelcastInstance = TestUtils.startHazelCastEmbedded();
+    }
+
+    @AfterAll
+    static void after() {
+        hazelcastInstance.shutdown();
+    }
+
+    @Test
+    void contendedBookings() throws InterruptedException {
+        long[] latencies = new long[OPERATIONS];
+        AtomicInteger nextOperation = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    int operation;
+                    while ((operation = nextOperation.getAndIncrement()) < OPERATIONS) {
+                        long begin = System.nanoTime();
+                        record(runRandomOperation());
+                        latencies[operation] = System.nanoTime() - begin;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(10, TimeUnit.MINUTES), "Stress run did not complete in time");
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        log.info("{} operations on {} threads in {} ms: {} ops/s, p50 {} ms, p99 {} ms, max {} ms",
+                OPERATIONS, THREADS, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                OPERATIONS * TimeUnit.SECONDS.toNanos(1) / elapsed,
+                toMillis(percentile(latencies, 50)), toMillis(percentile(latencies, 99)),
+                toMillis(latencies[latencies.length - 1]));
+        log.info("Outcomes: {}", outcomes);
+        log.info("Booking lock: {} acquired, {} timeouts, max wait {} ms, max hold {} ms",
+                bookingLockManager.getStatistics().getAcquiredCount(),
+                bookingLockManager.getStatistics().getTimeoutCount(),
+                bookingLockManager.getStatistics().getMaxWaitTime(TimeUnit.MILLISECONDS),
+                bookingLockManager.getStatistics().getMaxHoldTime(TimeUnit.MILLISECONDS));
+
+        assertNoOverlap();
+    }
+
+    private OUTCOME runRandomOperation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int dice = random.nextInt(100);
+        try {
+            if (dice < 60 || bookedReferences.isEmpty()) {
+                ReservationDTO reservationDTO = new ReservationDTO();
+                reservationDTO.setEmail("camper" + random.nextInt(200) + "@stress.com");
+                reservationDTO.setFullName("Stress Camper");
+                reservationDTO.setCheckInDate(randomArrival(random));
+                reservationDTO.setCheckoutDate(reservationDTO.getCheckInDate().plusDays(1 + random.nextInt(3)));
+                Reservation reservation = reservationService.createReservation(reservationDTO);
+                bookedReferences.add(reservation.getReservationId());
+                return OUTCOME.BOOKED;
+            }
+            String reference = bookedReferences.poll();
+            if (reference == null) {
+                return OUTCOME.NOT_FOUND;
+            }
+            if (dice < 80) {
+                UpdateReservationDTO updateReservationDTO = new UpdateReservationDTO();
+                updateReservationDTO.setBookingReferenceId(reference);
+                updateReservationDTO.setCheckInDate(randomArrival(random));
+                updateReservationDTO.setCheckoutDate(updateReservationDTO.getCheckInDate().plusDays(1 + random.nextInt(3)));
+                try {
+                    reservationService.modifyReservation(updateReservationDTO);
+                } finally {
+                    bookedReferences.add(reference);
+                }
+                return OUTCOME.MODIFIED;
+            }
+            reservationService.cancelReservation(reference);
+            return OUTCOME.CANCELLED;
+        } catch (AccessDeniedException e) {
+            return OUTCOME.CONFLICT;
+        } catch (ObjectNotFoundException e) {
+            return OUTCOME.NOT_FOUND;
+        } catch (ServiceUnavailableException e) {
+            return OUTCOME.UNAVAILABLE;
+        } catch (DataIntegrityViolationException e) {
+            return OUTCOME.DUPLICATE_DATES;
+        } catch (OptimisticLockingFailureException e) {
+            return OUTCOME.CONCURRENT_UPDATE;
+        } catch (RuntimeException e) {
+            log.warn("Unexpected failure", e);
+            return OUTCOME.ERROR;
+        }
+    }
+
+    private void assertNoOverlap() {
+        if (reservationService instanceof WriteBehindReservationService) {
+            //the changes still waiting for the write delay are written before the database is checked
+            ((WriteBehindReservationService) reservationService).flush();
+        }
+        //the campsite is loaded lazily
+        Map<String, List<Reservation>> reservationsByCampsite = transactionTemplate.execute(status ->
+                reservationRepository.findAll().stream()
+                        .collect(Collectors.groupingBy(reservation -> reservation.getCampsite().getCode())));
+        List<String> overlaps = new ArrayList<>();
+        int stored = 0;
+        for (Map.Entry<String, List<Reservation>> campsite : reservationsByCampsite.entrySet()) {
+            List<Reservation> reservations = campsite.getValue().stream()
+                    .sorted(Comparator.comparing(Reservation::getArrivalDate))
+                    .collect(Collectors.toList());
+            LocalDate lastDeparture = LocalDate.MIN;
+            for (Reservation reservation : reservations) {
+                if (reservation.getArrivalDate().isBefore(lastDeparture)) {
+                    overlaps.add(campsite.getKey() + " " + reservation.getReservationId() + " "
+                            + reservation.getArrivalDate() + " -> " + reservation.getDepartureDate());
+                }
+                if (reservation.getDepartureDate().isAfter(lastDeparture)) {
+                    lastDeparture = reservation.getDepartureDate();
+                }
+            }
+            stored += reservations.size();
+        }
+        log.info("{} reservations stored on {} campsites", stored, reservationsByCampsite.size());
+        if (!overlaps.isEmpty()) {
+            fail(overlaps.size() + " overlapping reservations: " + overlaps);
+        }
+    }
+
+    private void record(OUTCOME outcome) {
+        outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+    }
+
+    private static LocalDate randomArrival(ThreadLocalRandom random) {
+        return LocalDate.now().plusDays(1 + random.nextInt(30));
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
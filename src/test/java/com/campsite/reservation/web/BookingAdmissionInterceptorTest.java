@@ -0,0 +1,85 @@
+package com.campsite.reservation.web;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingAdmissionInterceptorTest {
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Test
+    void permitIsReleasedOnCompletion() {
+        BookingAdmissionInterceptor interceptor = interceptor(1, 0, Duration.ofSeconds(5));
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        assertTrue(interceptor.preHandle(first, response, null));
+        assertEquals(1, interceptor.getInFlightCount());
+
+        MockHttpServletRequest rejected = new MockHttpServletRequest();
+        assertThrows(ServiceUnavailableException.class, () -> interceptor.preHandle(rejected, response, null));
+        //completing a rejected request must not give a permit back
+        interceptor.afterCompletion(rejected, response, null, null);
+        assertEquals(1, interceptor.getInFlightCount());
+
+        interceptor.afterCompletion(first, response, null, null);
+        assertEquals(0, interceptor.getInFlightCount());
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), response, null));
+        assertEquals(1, interceptor.getRejectedCount());
+    }
+
+    @Test
+    void fullQueueIsRejectedStraightAway() {
+        BookingAdmissionInterceptor interceptor = interceptor(1, 0, Duration.ofSeconds(30));
+        interceptor.preHandle(new MockHttpServletRequest(), response, null);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+                assertThrows(ServiceUnavailableException.class, () -> interceptor.preHandle(new MockHttpServletRequest(), response, null)));
+    }
+
+    @Test
+    void queuedRequestIsRejectedAfterTheQueueTimeout() {
+        BookingAdmissionInterceptor interceptor = interceptor(1, 1, Duration.ofMillis(100));
+        interceptor.preHandle(new MockHttpServletRequest(), response, null);
+
+        long begin = System.nanoTime();
+        assertThrows(ServiceUnavailableException.class, () -> interceptor.preHandle(new MockHttpServletRequest(), response, null));
+        assertTrue(System.nanoTime() - begin >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, interceptor.getWaitingCount());
+    }
+
+    @Test
+    void queuedRequestIsAdmittedWhenAPermitIsReleased() throws Exception {
+        BookingAdmissionInterceptor interceptor = interceptor(1, 1, Duration.ofSeconds(30));
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        interceptor.preHandle(first, response, null);
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(
+                () -> interceptor.preHandle(new MockHttpServletRequest(), response, null));
+        while (interceptor.getWaitingCount() == 0) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        interceptor.afterCompletion(first, response, null, null);
+
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1, interceptor.getInFlightCount());
+    }
+
+    private static BookingAdmissionInterceptor interceptor(int maxConcurrent, int queueDepth, Duration queueTimeout) {
+        CampsiteProperties properties = new CampsiteProperties();
+        properties.getAdmission().setMaxConcurrent(maxConcurrent);
+        properties.getAdmission().setQueueDepth(queueDepth);
+        properties.getAdmission().setQueueTimeout(queueTimeout);
+        return new BookingAdmissionInterceptor(properties);
+    }
+}
@@ -0,0 +1,149 @@
+package com.campsite.reservation.web;
+
+import com.campsite.reservation.TestUtils;
+import com.campsite.reservation.model.Campsite;
+import com.campsite.reservation.model.Reservation;
+import com.campsite.reservation.model.ReservationDTO;
+import com.campsite.reservation.repository.CampsiteRepository;
+import com.campsite.reservation.service.ReservationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ReservationControllerTest {
+
+    @BeforeAll
+    public static void before() {
+        TestUtils.startHazelCastEmbedded();
+    }
+
+    @Resource
+    private WebApplicationContext webApplicationContext;
+
+    @Resource
+    private ReservationService reservationService;
+
+    @Resource
+    private CampsiteRepository campsiteRepository;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        //built here rather than with @AutoConfigureMockMvc, which would start a second context on the same database
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+    }
+
+    @Test
+    void availabilityIsNotModifiedUntilABookingCommits() throws Exception {
+        String campsite = createCampsite("etag");
+        String eTag = mockMvc.perform(get("/availability").param("campsite", campsite))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+        mockMvc.perform(get("/availability").param("campsite", campsite).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        reservationService.createReservation(reservation(campsite, "etag@doe.com"));
+        String newETag = mockMvc.perform(get("/availability").param("campsite", campsite).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(eTag, newETag);
+    }
+
+    @Test
+    void defaultWindowIsServedPreSerialized() throws Exception {
+        String campsite = createCampsite("serialized");
+        byte[] expected = objectMapper.writeValueAsBytes(reservationService.retrieveAvailableDates(campsite, null, null));
+        MockHttpServletResponse plain = mockMvc.perform(get("/availability").param("campsite", campsite))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        assertArrayEquals(expected, plain.getContentAsByteArray());
+        assertEquals(MediaType.APPLICATION_JSON_VALUE, plain.getContentType());
+
+        reservationService.createReservation(reservation(campsite, "serialized@doe.com"));
+        expected = objectMapper.writeValueAsBytes(reservationService.retrieveAvailableDates(campsite, null, null));
+        MockHttpServletResponse gzipped = mockMvc.perform(get("/availability").param("campsite", campsite)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        assertEquals("gzip", gzipped.getHeader(HttpHeaders.CONTENT_ENCODING));
+        try (GZIPInputStream content = new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentAsByteArray()))) {
+            assertArrayEquals(expected, content.readAllBytes());
+        }
+    }
+
+    @Test
+    void streamsSnapshotThenChanges() throws Exception {
+        String campsite = createCampsite("stream");
+        MockHttpServletResponse response = mockMvc.perform(get("/availability/stream").param("campsite", campsite))
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+        assertTrue(response.getContentAsString().startsWith("event:snapshot"), response.getContentAsString());
+
+        Reservation reservation = reservationService.createReservation(reservation(campsite, "stream@doe.com"));
+        awaitContent(response, "\"available\":false");
+
+        reservationService.cancelReservation(reservation.getReservationId());
+        awaitContent(response, "\"available\":true");
+        assertTrue(response.getContentAsString().contains("event:availability"));
+    }
+
+    private String createCampsite(String code) {
+        if (campsiteRepository.findCampsiteByCode(code).isEmpty()) {
+            Campsite campsite = new Campsite();
+            campsite.setCode(code);
+            campsite.setName(code);
+            campsiteRepository.save(campsite);
+        }
+        return code;
+    }
+
+    private static ReservationDTO reservation(String campsite, String email) {
+        ReservationDTO reservationDTO = new ReservationDTO();
+        reservationDTO.setEmail(email);
+        reservationDTO.setFullName("John Doe");
+        reservationDTO.setCampsite(campsite);
+        reservationDTO.setCheckInDate(LocalDate.now().plusDays(5));
+        reservationDTO.setCheckoutDate(LocalDate.now().plusDays(7));
+        return reservationDTO;
+    }
+
+    private static void awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!response.getContentAsString().contains(expected) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertTrue(response.getContentAsString().contains(expected), response.getContentAsString());
+    }
+}
@@ -0,0 +1,73 @@
+package com.campsite.reservation.web;
+
+import com.campsite.reservation.config.CampsiteProperties;
+import com.campsite.reservation.exception.ObjectNotFoundException;
+import com.campsite.reservation.model.AvailableDate;
+import com.campsite.reservation.service.ReservationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StartupWarmUpTest {
+
+    @Mock
+    private ReservationService reservationService;
+
+    @Mock
+    private AvailabilityResponseCache availabilityResponseCache;
+
+    @Spy
+    private ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Spy
+    private CampsiteProperties campsiteProperties = new CampsiteProperties();
+
+    @InjectMocks
+    private StartupWarmUp startupWarmUp = new StartupWarmUp();
+
+    private final ApplicationReadyEvent event = mock(ApplicationReadyEvent.class);
+
+    private final LocalDate today = LocalDate.now();
+
+    @Test
+    void runsTheConfiguredIterations() {
+        campsiteProperties.getWarmUp().setIterations(50);
+        when(reservationService.retrieveAvailabilityVersion(null, null, null)).thenReturn("1");
+        when(reservationService.retrieveAvailableDates(eq(null), any(), any()))
+                .thenReturn(List.of(new AvailableDate(today.plusDays(1), today.plusDays(31))));
+
+        startupWarmUp.warmUp(event);
+
+        verify(availabilityResponseCache, times(50)).get(null, "1");
+        //windows starting on each of the next 30 days
+        verify(reservationService, times(2)).retrieveAvailableDates(null, today.plusDays(1), today.plusDays(31));
+        verify(reservationService, times(1)).retrieveAvailableDates(null, today.plusDays(30), today.plusDays(60));
+    }
+
+    @Test
+    void failureDoesNotPreventTheStartup() {
+        when(reservationService.retrieveAvailabilityVersion(null, null, null)).thenThrow(new ObjectNotFoundException("No campsite"));
+
+        assertDoesNotThrow(() -> startupWarmUp.warmUp(event));
+        verify(availabilityResponseCache, never()).get(any(), any());
+    }
+}